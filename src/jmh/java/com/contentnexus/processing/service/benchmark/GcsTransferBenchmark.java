@@ -0,0 +1,149 @@
+package com.contentnexus.processing.service.benchmark;
+
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.contentnexus.processing.service.service.GcsService;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload and download through {@link GcsService} against the in-memory {@code LocalStorageHelper}
+ * Storage, so results reflect the service's own buffering, chunking and checksum work rather than
+ * the network. The largest download is above the parallel-download threshold and takes the ranged
+ * path; uploads stay below one chunk because the fake does not support multi-chunk resumable sessions.
+ * Multiply ops/s by the file size for bytes/s; {@code -prof gc} adds the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class GcsTransferBenchmark {
+    private static final String BUCKET = "benchmark-bucket";
+
+    @State(Scope.Benchmark)
+    public static class UploadState {
+        @Param({"1048576", "4194304", "8388608"})
+        private int fileSize;
+
+        private GcsService gcsService;
+        private Path sourceFile;
+        private String targetUri;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            gcsService = newGcsService(LocalStorageHelper.getOptions().getService());
+            sourceFile = Files.createTempFile("gcs-benchmark-upload", ".bin");
+            writeRandomFile(sourceFile, fileSize);
+            targetUri = gcsService.generateGcsUri(BUCKET, "uploaded-" + fileSize + ".bin");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            gcsService.shutdown();
+            Files.deleteIfExists(sourceFile);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DownloadState {
+        @Param({"1048576", "16777216", "134217728"})
+        private int fileSize;
+
+        private GcsService gcsService;
+        private Path downloadedFile;
+        private String storedObjectUri;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Storage storage = LocalStorageHelper.getOptions().getService();
+            gcsService = newGcsService(storage);
+            downloadedFile = Files.createTempFile("gcs-benchmark-download", ".bin");
+
+            // Seeded directly, since objects above one upload chunk cannot go through the fake's upload path
+            Path sourceFile = Files.createTempFile("gcs-benchmark-source", ".bin");
+            writeRandomFile(sourceFile, fileSize);
+            BlobId blobId = BlobId.of(BUCKET, "stored-" + fileSize + ".bin");
+            storage.create(BlobInfo.newBuilder(blobId).build(), Files.readAllBytes(sourceFile));
+            Files.delete(sourceFile);
+            storedObjectUri = blobId.toGsUtilUri();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            gcsService.shutdown();
+            Files.deleteIfExists(downloadedFile);
+        }
+    }
+
+    @Benchmark
+    public void upload(UploadState state) {
+        state.gcsService.uploadToGcs(state.sourceFile.toFile(), state.targetUri);
+    }
+
+    @Benchmark
+    public void download(DownloadState state) {
+        state.gcsService.downloadFromGcs(state.storedObjectUri, state.downloadedFile.toFile());
+    }
+
+    /**
+     * Builds the service outside Spring with the same settings as the {@code @Value} defaults.
+     */
+    static GcsService newGcsService(Storage storage) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GcsService gcsService = new GcsService(storage, meterRegistry, new BackendGuards(new StandardEnvironment(), meterRegistry));
+        ReflectionTestUtils.setField(gcsService, "archiveMegabytesPerChunk", 1024L);
+        ReflectionTestUtils.setField(gcsService, "uploadChunkSize", 16 * 1024 * 1024);
+        ReflectionTestUtils.setField(gcsService, "uploadBufferPoolSize", 4);
+        ReflectionTestUtils.setField(gcsService, "uploadMaxResumeAttempts", 3);
+        ReflectionTestUtils.setField(gcsService, "downloadParallelThreshold", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(gcsService, "downloadRangeSize", 32L * 1024 * 1024);
+        ReflectionTestUtils.setField(gcsService, "downloadParallelism", 8);
+        ReflectionTestUtils.setField(gcsService, "downloadMaxRangeAttempts", 3);
+        gcsService.init();
+        return gcsService;
+    }
+
+    private static void writeRandomFile(Path path, int size) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long remaining = size;
+            while (remaining > 0) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    buffer.put((byte) random.nextInt(256));
+                }
+                buffer.flip().limit((int) Math.min(buffer.capacity(), remaining));
+                remaining -= channel.write(buffer);
+            }
+        }
+    }
+}
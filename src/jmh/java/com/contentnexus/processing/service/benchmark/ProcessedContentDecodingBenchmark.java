@@ -0,0 +1,72 @@
+package com.contentnexus.processing.service.benchmark;
+
+import com.contentnexus.processing.service.config.KafkaConfig;
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of {@code video_ingested} payloads with the deserializer the listener container uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProcessedContentDecodingBenchmark {
+    private static final String TOPIC = "video_ingested";
+
+    private JsonDeserializer<ProcessedContent> deserializer;
+    private byte[] ingestedPayload;
+    private byte[] processedPayload;
+
+    @Setup
+    public void setUp() {
+        deserializer = KafkaConfig.processedContentDeserializer();
+
+        // What the ingest service publishes
+        ingestedPayload = """
+                {"videoId":"video-000123","rawVideoPath":"gs://raw-videos/uploads/video-000123.mp4","templateId":"abr-ladder","status":"Ingested"}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        // A replayed record after processing, with the full rendition ladder
+        processedPayload = """
+                {"id":"66f1c2a9e4b0a1b2c3d4e5f6","videoId":"video-000123","rawVideoPath":"gs://raw-videos/uploads/video-000123.mp4",
+                 "templateId":"abr-ladder","status":"Processed","processedVideoPath":"gs://archive/Archive_processed_video-000123.mp4",
+                 "encodingDetails":"1080p H.264 5000 kbps, 720p H.264 2800 kbps, 480p H.264 1400 kbps, 360p H.264 800 kbps",
+                 "contentFingerprint":"md5:1B2M2Y8AsgTpgAmY7PhCfg==","processingStage":"OUTPUT_ARCHIVED",
+                 "transcoderJobName":"projects/p/locations/us-central1/jobs/0123456789",
+                 "manifestUris":["gs://out/processed_videos/video-000123/manifest.m3u8","gs://out/processed_videos/video-000123/manifest.mpd"],
+                 "renditions":[
+                  {"key":"audio","uri":"gs://out/processed_videos/video-000123/audio/","container":"fmp4","segmented":true},
+                  {"key":"1080p","uri":"gs://out/processed_videos/video-000123/1080p/","container":"fmp4","segmented":true,"codec":"H.264","widthPixels":1920,"heightPixels":1080,"bitrateBps":5000000},
+                  {"key":"hd","uri":"gs://out/processed_videos/video-000123/hd.mp4","container":"mp4","segmented":false,"codec":"H.264","widthPixels":1920,"heightPixels":1080,"bitrateBps":5000000},
+                  {"key":"720p","uri":"gs://out/processed_videos/video-000123/720p/","container":"fmp4","segmented":true,"codec":"H.264","widthPixels":1280,"heightPixels":720,"bitrateBps":2800000},
+                  {"key":"480p","uri":"gs://out/processed_videos/video-000123/480p/","container":"fmp4","segmented":true,"codec":"H.264","widthPixels":854,"heightPixels":480,"bitrateBps":1400000},
+                  {"key":"360p","uri":"gs://out/processed_videos/video-000123/360p/","container":"fmp4","segmented":true,"codec":"H.264","widthPixels":640,"heightPixels":360,"bitrateBps":800000}]}
+                """.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ProcessedContent decodeIngested() {
+        return deserializer.deserialize(TOPIC, ingestedPayload);
+    }
+
+    @Benchmark
+    public ProcessedContent decodeWithRenditions() {
+        return deserializer.deserialize(TOPIC, processedPayload);
+    }
+}
@@ -0,0 +1,291 @@
+package com.contentnexus.processing.service.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory S3 endpoint on the JDK HTTP server, covering what the CRT transfer manager uses:
+ * single and multipart uploads (including {@code aws-chunked} bodies with trailing checksums),
+ * ranged GETs, HEAD, and single and multipart copies. Path-style addressing only; signatures are
+ * not checked.
+ */
+class FakeS3Server implements AutoCloseable {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentSkipListMap<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-s3");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    byte[] getObject(String bucket, String key) {
+        return objects.get(bucket + "/" + key);
+    }
+
+    int objectCount() {
+        return objects.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            URI uri = exchange.getRequestURI();
+            String path = URLDecoder.decode(uri.getRawPath().substring(1), StandardCharsets.UTF_8);
+            Map<String, String> query = queryOf(uri.getRawQuery());
+            String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+
+            switch (exchange.getRequestMethod()) {
+                case "HEAD" -> head(exchange, path);
+                case "GET" -> get(exchange, path);
+                case "PUT" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploadPart(exchange, query, copySource);
+                    } else if (copySource != null) {
+                        byte[] source = sourceObject(copySource);
+                        if (source == null) {
+                            noSuchKey(exchange, copySource);
+                            return;
+                        }
+                        objects.put(path, source);
+                        sendXml(exchange, 200, "<CopyObjectResult><ETag>" + etagOf(source) + "</ETag></CopyObjectResult>");
+                    } else {
+                        byte[] body = readBody(exchange);
+                        objects.put(path, body);
+                        exchange.getResponseHeaders().set("ETag", etagOf(body));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                }
+                case "POST" -> {
+                    if (query.containsKey("uploads")) {
+                        String uploadId = UUID.randomUUID().toString();
+                        multipartUploads.put(uploadId, new ConcurrentSkipListMap<>());
+                        String[] location = path.split("/", 2);
+                        sendXml(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + location[0] + "</Bucket><Key>"
+                                + location[1] + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    } else {
+                        completeMultipartUpload(exchange, path, query.get("uploadId"));
+                    }
+                }
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        multipartUploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(path);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        } catch (RuntimeException e) {
+            sendXml(exchange, 500, "<Error><Code>InternalError</Code><Message>" + e + "</Message></Error>");
+        }
+    }
+
+    private void head(HttpExchange exchange, String path) throws IOException {
+        byte[] object = objects.get(path);
+        if (object == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", etagOf(object));
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        // The JDK server sends no length for HEAD; the client reads the object size from this header
+        exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void get(HttpExchange exchange, String path) throws IOException {
+        byte[] object = objects.get(path);
+        if (object == null) {
+            noSuchKey(exchange, path);
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", etagOf(object));
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        if (matcher == null || !matcher.matches()) {
+            send(exchange, 200, object);
+            return;
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = matcher.group(2).isEmpty() ? object.length - 1 : Math.min(object.length - 1, Integer.parseInt(matcher.group(2)));
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.length);
+        send(exchange, 206, Arrays.copyOfRange(object, start, end + 1));
+    }
+
+    private void uploadPart(HttpExchange exchange, Map<String, String> query, String copySource) throws IOException {
+        ConcurrentSkipListMap<Integer, byte[]> parts = multipartUploads.get(query.get("uploadId"));
+        if (parts == null) {
+            sendXml(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        int partNumber = Integer.parseInt(query.get("partNumber"));
+
+        if (copySource == null) {
+            byte[] body = readBody(exchange);
+            parts.put(partNumber, body);
+            exchange.getResponseHeaders().set("ETag", etagOf(body));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+
+        byte[] source = sourceObject(copySource);
+        if (source == null) {
+            noSuchKey(exchange, copySource);
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("x-amz-copy-source-range");
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        byte[] part = matcher != null && matcher.matches()
+                ? Arrays.copyOfRange(source, Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) + 1)
+                : source;
+        parts.put(partNumber, part);
+        sendXml(exchange, 200, "<CopyPartResult><ETag>" + etagOf(part) + "</ETag></CopyPartResult>");
+    }
+
+    private void completeMultipartUpload(HttpExchange exchange, String path, String uploadId) throws IOException {
+        String request = new String(readBody(exchange), StandardCharsets.UTF_8);
+        ConcurrentSkipListMap<Integer, byte[]> parts = uploadId != null ? multipartUploads.remove(uploadId) : null;
+        if (parts == null) {
+            sendXml(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        Matcher partNumbers = PART_NUMBER.matcher(request);
+        while (partNumbers.find()) {
+            object.write(parts.get(Integer.parseInt(partNumbers.group(1))));
+        }
+        byte[] content = object.toByteArray();
+        objects.put(path, content);
+
+        String[] location = path.split("/", 2);
+        sendXml(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + location[0] + "</Bucket><Key>" + location[1]
+                + "</Key><ETag>" + etagOf(content) + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private byte[] sourceObject(String copySource) {
+        String source = URLDecoder.decode(copySource, StandardCharsets.UTF_8);
+        return objects.get(source.startsWith("/") ? source.substring(1) : source);
+    }
+
+    /**
+     * Reads the request body, decoding {@code aws-chunked} framing: hex chunk sizes, each followed
+     * by its bytes, then a zero-size chunk and the trailing checksum headers, which are ignored.
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        boolean chunked = encoding != null && encoding.contains("aws-chunked")
+                || contentSha256 != null && contentSha256.startsWith("STREAMING-");
+        if (!chunked) {
+            return body;
+        }
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(body.length);
+        int position = 0;
+        while (position < body.length) {
+            int lineEnd = indexOfCrlf(body, position);
+            String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";", 2)[0].trim(), 16);
+            position = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            decoded.write(body, position, size);
+            position += size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Malformed aws-chunked body");
+    }
+
+    private static Map<String, String> queryOf(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                    pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+        }
+        return query;
+    }
+
+    private static void noSuchKey(HttpExchange exchange, String key) throws IOException {
+        sendXml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message><Key>"
+                + key + "</Key></Error>");
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, status, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static String etagOf(byte[] content) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.contentnexus.processing.service.loadtest;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.video.transcoder.v1.AudioStream;
+import com.google.cloud.video.transcoder.v1.CreateJobRequest;
+import com.google.cloud.video.transcoder.v1.ElementaryStream;
+import com.google.cloud.video.transcoder.v1.GetJobRequest;
+import com.google.cloud.video.transcoder.v1.Job;
+import com.google.cloud.video.transcoder.v1.JobConfig;
+import com.google.cloud.video.transcoder.v1.Manifest;
+import com.google.cloud.video.transcoder.v1.MuxStream;
+import com.google.cloud.video.transcoder.v1.VideoStream;
+import com.google.cloud.video.transcoder.v1.stub.TranscoderServiceStub;
+import com.google.rpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process Transcoder. Each created job runs for a random duration within the configured range
+ * and then fails with the configured probability; a successful job writes its mux stream files and
+ * manifests to the fake Storage, so the archive stage finds real objects to copy.
+ */
+class FakeTranscoderServiceStub extends TranscoderServiceStub {
+    private static final byte[] OUTPUT_BYTES = new byte[16 * 1024];
+
+    private final Storage storage;
+    private final long minDurationMillis;
+    private final long maxDurationMillis;
+    private final double failureRate;
+
+    private final Map<String, FakeJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobCounter = new AtomicLong();
+    private final AtomicLong getJobCalls = new AtomicLong();
+    private volatile boolean shutdown;
+
+    FakeTranscoderServiceStub(Storage storage, long minDurationMillis, long maxDurationMillis, double failureRate) {
+        this.storage = storage;
+        this.minDurationMillis = minDurationMillis;
+        this.maxDurationMillis = maxDurationMillis;
+        this.failureRate = failureRate;
+    }
+
+    long getGetJobCalls() {
+        return getJobCalls.get();
+    }
+
+    @Override
+    public UnaryCallable<CreateJobRequest, Job> createJobCallable() {
+        return new UnaryCallable<>() {
+            @Override
+            public ApiFuture<Job> futureCall(CreateJobRequest request, ApiCallContext context) {
+                Job requested = request.getJob();
+                Job job = requested.toBuilder()
+                        .setName(request.getParent() + "/jobs/" + jobCounter.incrementAndGet())
+                        .setConfig(requested.hasConfig() ? requested.getConfig() : presetConfig(requested.getOutputUri()))
+                        .setState(Job.ProcessingState.PENDING)
+                        .build();
+
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long duration = minDurationMillis + (maxDurationMillis > minDurationMillis
+                        ? random.nextLong(maxDurationMillis - minDurationMillis) : 0);
+                jobs.put(job.getName(), new FakeJob(job, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration),
+                        random.nextDouble() < failureRate));
+                return ApiFutures.immediateFuture(job);
+            }
+        };
+    }
+
+    @Override
+    public UnaryCallable<GetJobRequest, Job> getJobCallable() {
+        return new UnaryCallable<>() {
+            @Override
+            public ApiFuture<Job> futureCall(GetJobRequest request, ApiCallContext context) {
+                getJobCalls.incrementAndGet();
+                FakeJob job = jobs.get(request.getName());
+                if (job == null) {
+                    return ApiFutures.immediateFailedFuture(new IllegalArgumentException("Job not found: " + request.getName()));
+                }
+                return ApiFutures.immediateFuture(job.current());
+            }
+        };
+    }
+
+    /**
+     * Roughly what the web-hd preset produces: an SD and an HD MP4 plus HLS and DASH manifests.
+     */
+    private static JobConfig presetConfig(String outputUri) {
+        return JobConfig.newBuilder()
+                .addElementaryStreams(videoStream("video-sd", 640, 360, 550000))
+                .addElementaryStreams(videoStream("video-hd", 1280, 720, 2500000))
+                .addElementaryStreams(ElementaryStream.newBuilder()
+                        .setKey("audio")
+                        .setAudioStream(AudioStream.newBuilder().setCodec("aac").setBitrateBps(64000)))
+                .addMuxStreams(MuxStream.newBuilder().setKey("sd").setContainer("mp4")
+                        .addElementaryStreams("video-sd").addElementaryStreams("audio"))
+                .addMuxStreams(MuxStream.newBuilder().setKey("hd").setContainer("mp4")
+                        .addElementaryStreams("video-hd").addElementaryStreams("audio"))
+                .addManifests(Manifest.newBuilder().setFileName("manifest.m3u8").setType(Manifest.ManifestType.HLS)
+                        .addMuxStreams("sd").addMuxStreams("hd"))
+                .addManifests(Manifest.newBuilder().setFileName("manifest.mpd").setType(Manifest.ManifestType.DASH)
+                        .addMuxStreams("sd").addMuxStreams("hd"))
+                .build();
+    }
+
+    private static ElementaryStream videoStream(String key, int width, int height, int bitrate) {
+        return ElementaryStream.newBuilder()
+                .setKey(key)
+                .setVideoStream(VideoStream.newBuilder().setH264(VideoStream.H264CodecSettings.newBuilder()
+                        .setWidthPixels(width).setHeightPixels(height).setBitrateBps(bitrate).setFrameRate(30)))
+                .build();
+    }
+
+    private class FakeJob {
+        private final Job created;
+        private final long finishesAtNanos;
+        private final boolean fails;
+        private boolean outputWritten;
+
+        private FakeJob(Job created, long finishesAtNanos, boolean fails) {
+            this.created = created;
+            this.finishesAtNanos = finishesAtNanos;
+            this.fails = fails;
+        }
+
+        private synchronized Job current() {
+            if (System.nanoTime() < finishesAtNanos) {
+                return created.toBuilder().setState(Job.ProcessingState.RUNNING).build();
+            }
+            if (fails) {
+                return created.toBuilder()
+                        .setState(Job.ProcessingState.FAILED)
+                        .setError(Status.newBuilder().setCode(13).setMessage("Simulated transcoding failure"))
+                        .build();
+            }
+            if (!outputWritten) {
+                writeOutput();
+                outputWritten = true;
+            }
+            return created.toBuilder().setState(Job.ProcessingState.SUCCEEDED).build();
+        }
+
+        private void writeOutput() {
+            String outputUri = created.getOutputUri().endsWith("/") ? created.getOutputUri() : created.getOutputUri() + "/";
+            for (MuxStream muxStream : created.getConfig().getMuxStreamsList()) {
+                if (!muxStream.getContainer().equals("fmp4")) {
+                    String fileName = muxStream.getFileName().isEmpty()
+                            ? muxStream.getKey() + "." + muxStream.getContainer()
+                            : muxStream.getFileName();
+                    write(outputUri + fileName);
+                }
+            }
+            for (Manifest manifest : created.getConfig().getManifestsList()) {
+                write(outputUri + manifest.getFileName());
+            }
+        }
+
+        private void write(String gcsUri) {
+            storage.create(BlobInfo.newBuilder(BlobId.fromGsUtilUri(gcsUri)).build(), OUTPUT_BYTES);
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown = true;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown;
+    }
+
+    @Override
+    public void shutdownNow() {
+        shutdown = true;
+    }
+
+    @Override
+    public boolean awaitTermination(long duration, TimeUnit unit) {
+        return true;
+    }
+}
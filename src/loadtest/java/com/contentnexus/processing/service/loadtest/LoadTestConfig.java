@@ -0,0 +1,58 @@
+package com.contentnexus.processing.service.loadtest;
+
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import com.contentnexus.processing.service.service.MetadataUpdateService;
+import com.contentnexus.processing.service.service.ProcessedContentWriteBuffer;
+import com.contentnexus.processing.service.service.ProcessingLeaseService;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Replaces the Google Cloud clients from {@code GoogleCloudConfig} with in-process fakes, and the
+ * metadata service with one that records completion times. Bean names match the beans they replace.
+ */
+@TestConfiguration
+class LoadTestConfig {
+
+    @Value("${loadtest.transcoder.min-duration-millis:200}")
+    private long transcodeMinDurationMillis;
+
+    @Value("${loadtest.transcoder.max-duration-millis:2000}")
+    private long transcodeMaxDurationMillis;
+
+    @Value("${loadtest.transcoder.failure-rate:0.02}")
+    private double transcodeFailureRate;
+
+    @Bean
+    GoogleCredentials googleCredentials() {
+        return GoogleCredentials.create(new AccessToken("load-test", null));
+    }
+
+    @Bean
+    Storage storage() {
+        return LocalStorageHelper.getOptions().getService();
+    }
+
+    @Bean
+    FakeTranscoderServiceStub fakeTranscoderServiceStub(Storage storage) {
+        return new FakeTranscoderServiceStub(storage, transcodeMinDurationMillis, transcodeMaxDurationMillis, transcodeFailureRate);
+    }
+
+    @Bean
+    TranscoderServiceClient transcoderServiceClient(FakeTranscoderServiceStub fakeTranscoderServiceStub) {
+        return TranscoderServiceClient.create(fakeTranscoderServiceStub);
+    }
+
+    @Bean
+    MetadataUpdateService metadataUpdateService(ProcessedContentRepository processedContentRepository,
+                                                ProcessedContentWriteBuffer writeBuffer,
+                                                ProcessingLeaseService leaseService) {
+        return new RecordingMetadataUpdateService(processedContentRepository, writeBuffer, leaseService);
+    }
+}
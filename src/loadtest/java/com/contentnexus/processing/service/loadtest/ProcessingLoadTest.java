@@ -0,0 +1,347 @@
+package com.contentnexus.processing.service.loadtest;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import com.contentnexus.processing.service.service.MetadataUpdateService;
+import com.contentnexus.processing.service.service.ScratchSpaceManager;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pushes a burst of {@code video_ingested} records through the whole service with every external
+ * system replaced in-process: embedded Kafka, an in-memory Mongo server, {@code LocalStorageHelper}
+ * for GCS and {@link FakeTranscoderServiceStub} for the Transcoder. Reports throughput, end-to-end
+ * latency from send to terminal status, peak heap and peak scratch disk usage, startup time up to
+ * the first consumed record, and checks that every video's {@code content_processed} event is
+ * published and every failed video is dead-lettered.
+ * <p>
+ * Load shape is set with system properties, e.g.
+ * {@code ./mvnw -Pload-test verify -Dloadtest.videos=5000 -Dloadtest.transcoder.failure-rate=0.05}.
+ * With {@code -Dprocessing.archive.store=s3} archives go through the S3 client to {@link FakeS3Server}.
+ * With {@code -Dloadtest.urgent-every=N} every Nth video is sent in the {@code urgent} lane and its
+ * latency is reported separately.
+ */
+@SpringBootTest(properties = {
+        "spring.main.allow-bean-definition-overriding=true",
+        "google.cloud.project-id=load-test",
+        "google.cloud.credentials.file=unused",
+        "google.cloud.warmup.enabled=false",
+        "google.gcs.input-bucket=load-test-input",
+        "google.gcs.output-bucket=load-test-output",
+        "google.gcs.archive-bucket=load-test-archive",
+        "google.cloud.transcoder.poll.tick-millis=50",
+        "google.cloud.transcoder.poll.min-interval-millis=100",
+        "google.cloud.transcoder.poll.max-interval-millis=1000",
+        "google.cloud.transcoder.poll.expected-duration-millis=1000",
+        "processing.ingest.listener-concurrency=3",
+        "processing.scratch.directory=${java.io.tmpdir}/content-processing-load-test",
+        // The in-memory server logs every rejected lease claim (a duplicate key on redelivery) as an error
+        "logging.level.de.bwaldvogel.mongo.wire=OFF"
+})
+@EmbeddedKafka(partitions = 6, topics = {"video_ingested", "content_processed", "video_ingested-dlt"}, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+@Import(LoadTestConfig.class)
+class ProcessingLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingLoadTest.class);
+
+    private static MongoServer mongoServer;
+    private static FakeS3Server s3Server;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private Storage storage;
+
+    @Autowired
+    private MetadataUpdateService metadataUpdateService;
+
+    @Autowired
+    private ScratchSpaceManager scratchSpaceManager;
+
+    @Autowired
+    private ProcessedContentRepository processedContentRepository;
+
+    @Autowired
+    private FakeTranscoderServiceStub fakeTranscoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processing.scratch.directory}")
+    private String scratchDirectory;
+
+    @Value("${loadtest.videos:2000}")
+    private int videoCount;
+
+    @Value("${loadtest.raw-video-bytes:65536}")
+    private int rawVideoBytes;
+
+    @Value("${loadtest.timeout-seconds:600}")
+    private long timeoutSeconds;
+
+    @Value("${loadtest.urgent-every:0}")
+    private int urgentEvery;
+
+    @DynamicPropertySource
+    static void fakeServerProperties(DynamicPropertyRegistry registry) throws IOException {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHostString() + ":" + address.getPort() + "/load-test");
+
+        // Only used when processing.archive.store=s3
+        s3Server = new FakeS3Server();
+        registry.add("cloud.aws.s3.endpoint", s3Server::endpoint);
+        registry.add("cloud.aws.s3.path-style-access", () -> "true");
+        registry.add("cloud.aws.region.static", () -> "us-east-1");
+        registry.add("cloud.aws.credentials.access-key", () -> "load-test");
+        registry.add("cloud.aws.credentials.secret-key", () -> "load-test");
+    }
+
+    @AfterAll
+    static void stopFakeServers() {
+        mongoServer.shutdownNow();
+        s3Server.close();
+    }
+
+    @Test
+    void processesIngestBurst() throws Exception {
+        Map<String, Long> sentAtNanos = new ConcurrentHashMap<>();
+        Set<String> urgentVideoIds = ConcurrentHashMap.newKeySet();
+        Map<String, RecordingMetadataUpdateService.Completion> completions =
+                ((RecordingMetadataUpdateService) metadataUpdateService).getCompletions();
+
+        seedRawVideos();
+
+        ResourceSampler sampler = new ResourceSampler();
+        sampler.start();
+
+        long startedAt = System.nanoTime();
+        try (Producer<String, ProcessedContent> producer = new DefaultKafkaProducerFactory<String, ProcessedContent>(
+                KafkaTestUtils.producerProps(embeddedKafka), new StringSerializer(), new JsonSerializer<>()).createProducer()) {
+            for (int i = 0; i < videoCount; i++) {
+                ProcessedContent content = new ProcessedContent();
+                content.setVideoId(videoId(i));
+                content.setRawVideoPath(rawVideoUri(i));
+                if (urgentEvery > 0 && i % urgentEvery == urgentEvery - 1) {
+                    content.setPriority("urgent");
+                    urgentVideoIds.add(content.getVideoId());
+                }
+                sentAtNanos.put(content.getVideoId(), System.nanoTime());
+                producer.send(new ProducerRecord<>("video_ingested", content.getVideoId(), content));
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (completions.size() < videoCount && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        sampler.stop();
+
+        Report report = Report.of(startedAt, sentAtNanos, urgentVideoIds, completions, sampler, fakeTranscoder.getGetJobCalls(),
+                meterRegistry.get("application.ready.time").timeGauge().value(TimeUnit.SECONDS),
+                meterRegistry.get("processing.startup.first-record").timeGauge().value(TimeUnit.SECONDS));
+        logger.info("\n{}", report);
+        Files.writeString(Paths.get("target", "load-test-report.txt"), report.toString());
+
+        assertEquals(videoCount, completions.size(), "every video reaches a terminal status");
+        assertEquals(videoCount, processedContentRepository.count(), "one record per video");
+        assertEquals(videoCount, recordKeys("content_processed", videoCount, Duration.ofSeconds(30)).size(),
+                "every video gets a content_processed event");
+        assertEquals(report.failed(), recordKeys("video_ingested-dlt", report.failed(), Duration.ofSeconds(10)).size(),
+                "every failed video is dead-lettered");
+    }
+
+    private Set<String> recordKeys(String topic, long expected, Duration timeout) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("load-test-" + topic, "false", embeddedKafka);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        Set<String> videoIds = new HashSet<>();
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, topic);
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (videoIds.size() < expected && System.nanoTime() < deadline) {
+                consumer.poll(Duration.ofMillis(500)).forEach(record -> videoIds.add(record.key()));
+            }
+        }
+        return videoIds;
+    }
+
+    private void seedRawVideos() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < videoCount; i++) {
+            // Distinct content per video, so deduplication does not short-circuit the pipeline
+            byte[] content = new byte[rawVideoBytes];
+            for (int j = 0; j < content.length; j += 8) {
+                long value = random.nextLong();
+                for (int k = 0; k < 8 && j + k < content.length; k++) {
+                    content[j + k] = (byte) (value >>> (8 * k));
+                }
+            }
+            storage.create(BlobInfo.newBuilder(BlobId.fromGsUtilUri(rawVideoUri(i))).build(), content);
+        }
+    }
+
+    private static String videoId(int index) {
+        return String.format("load-video-%06d", index);
+    }
+
+    private static String rawVideoUri(int index) {
+        return "gs://load-test-input/raw/" + videoId(index) + ".mp4";
+    }
+
+    /**
+     * Samples heap and scratch usage while the load runs and keeps the peaks.
+     */
+    private class ResourceSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        private final AtomicLong peakHeapBytes = new AtomicLong();
+        private final AtomicLong peakScratchReservedBytes = new AtomicLong();
+        private final AtomicLong peakScratchDiskBytes = new AtomicLong();
+
+        void start() {
+            executor.scheduleAtFixedRate(this::sample, 0, 100, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() throws InterruptedException {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            sample();
+        }
+
+        private void sample() {
+            peakHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            peakScratchReservedBytes.accumulateAndGet(scratchSpaceManager.getUsedBytes(), Math::max);
+            peakScratchDiskBytes.accumulateAndGet(diskUsage(Paths.get(scratchDirectory)), Math::max);
+        }
+
+        private long diskUsage(Path directory) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                return files.filter(Files::isRegularFile).mapToLong(file -> {
+                    try {
+                        return Files.size(file);
+                    } catch (IOException e) {
+                        return 0L;  // deleted while walking
+                    }
+                }).sum();
+            } catch (IOException | RuntimeException e) {
+                return 0L;
+            }
+        }
+    }
+
+    private record Report(int videos, long processed, long failed, double elapsedSeconds, double videosPerSecond,
+                          long p50Millis, long p99Millis, long maxMillis, int urgentVideos,
+                          long urgentP50Millis, long urgentP99Millis, long peakHeapBytes,
+                          long peakScratchReservedBytes, long peakScratchDiskBytes, long getJobCalls,
+                          double readySeconds, double firstRecordSeconds) {
+
+        static Report of(long startedAt, Map<String, Long> sentAtNanos, Set<String> urgentVideoIds,
+                         Map<String, RecordingMetadataUpdateService.Completion> completions,
+                         ResourceSampler sampler, long getJobCalls, double readySeconds, double firstRecordSeconds) {
+            long[] latencies = latencies(sentAtNanos, completions, videoId -> true);
+            long[] urgentLatencies = latencies(sentAtNanos, completions, urgentVideoIds::contains);
+            long lastCompletion = completions.values().stream()
+                    .mapToLong(RecordingMetadataUpdateService.Completion::completedAtNanos)
+                    .max().orElse(startedAt);
+            double elapsedSeconds = (lastCompletion - startedAt) / 1e9;
+            long processed = completions.values().stream().filter(completion -> "Processed".equals(completion.status())).count();
+
+            return new Report(sentAtNanos.size(), processed, completions.size() - processed, elapsedSeconds,
+                    elapsedSeconds > 0 ? completions.size() / elapsedSeconds : 0,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    latencies.length > 0 ? latencies[latencies.length - 1] : 0,
+                    urgentVideoIds.size(), percentile(urgentLatencies, 0.50), percentile(urgentLatencies, 0.99),
+                    sampler.peakHeapBytes.get(), sampler.peakScratchReservedBytes.get(), sampler.peakScratchDiskBytes.get(),
+                    getJobCalls, readySeconds, firstRecordSeconds);
+        }
+
+        private static long[] latencies(Map<String, Long> sentAtNanos,
+                                        Map<String, RecordingMetadataUpdateService.Completion> completions,
+                                        Predicate<String> videoIds) {
+            return completions.entrySet().stream()
+                    .filter(entry -> videoIds.test(entry.getKey()))
+                    .mapToLong(entry -> TimeUnit.NANOSECONDS.toMillis(entry.getValue().completedAtNanos() - sentAtNanos.get(entry.getKey())))
+                    .sorted()
+                    .toArray();
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+        }
+
+        @Override
+        public String toString() {
+            String urgent = urgentVideos == 0 ? "" : String.format("""
+                      urgent p50 / p99         %d / %d ms (%d videos)
+                    """, urgentP50Millis, urgentP99Millis, urgentVideos);
+            return String.format("""
+                    Load test report
+                      videos sent              %d
+                      processed / failed       %d / %d
+                      elapsed                  %.1f s
+                      throughput               %.1f videos/s
+                      latency p50 / p99 / max  %d / %d / %d ms
+                      peak heap                %.1f MiB
+                      peak scratch reserved    %.1f MiB
+                      peak scratch on disk     %.1f MiB
+                      Transcoder getJob calls  %d
+                      ready / first record     %.1f / %.1f s after JVM start
+                    """, videos, processed, failed, elapsedSeconds, videosPerSecond, p50Millis, p99Millis, maxMillis,
+                    peakHeapBytes / 1048576.0, peakScratchReservedBytes / 1048576.0, peakScratchDiskBytes / 1048576.0,
+                    getJobCalls, readySeconds, firstRecordSeconds) + urgent;
+        }
+    }
+}
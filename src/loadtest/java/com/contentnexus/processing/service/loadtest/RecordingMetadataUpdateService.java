@@ -0,0 +1,36 @@
+package com.contentnexus.processing.service.loadtest;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import com.contentnexus.processing.service.service.MetadataUpdateService;
+import com.contentnexus.processing.service.service.ProcessedContentWriteBuffer;
+import com.contentnexus.processing.service.service.ProcessingLeaseService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Notes when each video reaches a terminal status, which is where end-to-end latency stops.
+ */
+class RecordingMetadataUpdateService extends MetadataUpdateService {
+
+    record Completion(String status, long completedAtNanos) {
+    }
+
+    private final Map<String, Completion> completions = new ConcurrentHashMap<>();
+
+    RecordingMetadataUpdateService(ProcessedContentRepository processedContentRepository,
+                                   ProcessedContentWriteBuffer writeBuffer, ProcessingLeaseService leaseService) {
+        super(processedContentRepository, writeBuffer, leaseService);
+    }
+
+    @Override
+    public void updateTerminalStatus(ProcessedContent content) {
+        super.updateTerminalStatus(content);
+        completions.putIfAbsent(content.getVideoId(), new Completion(content.getStatus(), System.nanoTime()));
+    }
+
+    Map<String, Completion> getCompletions() {
+        return completions;
+    }
+}
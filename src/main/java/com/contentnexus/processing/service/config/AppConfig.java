@@ -1,16 +1,22 @@
 package com.contentnexus.processing.service.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 @Configuration
 public class AppConfig {
+    @Value("${processing.scratch.directory:${java.io.tmpdir}/content-processing}")
+    private String scratchDirectory;
+
     @Bean
-    public Path tempDirectory() {
+    public Path tempDirectory() throws IOException {
         // Define the path where temporary files will be stored
-        return Paths.get("/tmp"); // Adjust this path as needed
+        return Files.createDirectories(Paths.get(scratchDirectory));
     }
 }
@@ -1,20 +1,41 @@
 package com.contentnexus.processing.service.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import java.util.List;
+
+/**
+ * Lets browsers on the listed origins poll the status API when
+ * {@code processing.status.cors.allowed-origins} is set. Only reads of {@code /api/content/**} are
+ * allowed cross-origin, without credentials; every other endpoint stays same-origin.
+ */
+@Configuration
+@ConditionalOnProperty(name = "processing.status.cors.allowed-origins")
 public class CORSConfig {
+
+    @Value("${processing.status.cors.allowed-origins}")
+    private List<String> allowedOrigins;
+
     @Bean
     public CorsFilter corsFilter() {
-        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         CorsConfiguration config = new CorsConfiguration();
-        config.setAllowCredentials(true);
-        config.addAllowedOriginPattern("*");
-        config.addAllowedHeader("*");
-        config.addAllowedMethod("*");
-        source.registerCorsConfiguration("/**", config);
+        config.setAllowCredentials(false);
+        config.setAllowedOrigins(allowedOrigins);
+        config.setAllowedMethods(List.of(HttpMethod.GET.name(), HttpMethod.HEAD.name()));
+        config.setAllowedHeaders(List.of(HttpHeaders.IF_NONE_MATCH));
+        // Pollers read the ETag to send it back in If-None-Match
+        config.setExposedHeaders(List.of(HttpHeaders.ETAG));
+
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/api/content/**", config);
         return new CorsFilter(source);
     }
 }
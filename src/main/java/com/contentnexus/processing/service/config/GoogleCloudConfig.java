@@ -0,0 +1,211 @@
+package com.contentnexus.processing.service.config;
+
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.grpc.ChannelPoolSettings;
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import com.google.cloud.video.transcoder.v1.ListJobsRequest;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the Google Cloud clients once per process. Credentials are read and scoped a single time
+ * and shared by the Storage client and the Transcoder client, whose gRPC channels stay open for the
+ * lifetime of the application. With {@code google.cloud.init-in-background} the clients are built
+ * on their own threads while the rest of the context starts.
+ */
+@Configuration
+public class GoogleCloudConfig {
+    private static final Logger logger = LoggerFactory.getLogger(GoogleCloudConfig.class);
+    private static final String CLOUD_PLATFORM_SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+    // gRPC servers typically allow 100 concurrent streams per connection
+    private static final int STREAMS_PER_CHANNEL = 100;
+
+    @Value("${google.cloud.credentials.file}")
+    private String credentialsPath;
+
+    @Value("${google.cloud.project-id}")
+    private String projectId;
+
+    @Value("${google.cloud.transcoder.location}")
+    private String location;
+
+    @Value("${google.gcs.input-bucket}")
+    private String inputBucket;
+
+    // 0 sizes the pool from the poller's batch size
+    @Value("${google.cloud.transcoder.channel-pool-size:0}")
+    private int transcoderChannelPoolSize;
+
+    @Value("${google.cloud.transcoder.poll.max-batch-size:500}")
+    private int pollMaxBatchSize;
+
+    @Value("${google.cloud.warmup.enabled:true}")
+    private boolean warmupEnabled;
+
+    // Warms up off the main thread, so the pod reports ready without waiting for it
+    @Value("${google.cloud.warmup.async:false}")
+    private boolean warmupAsync;
+
+    @Value("${google.cloud.init-in-background:false}")
+    private boolean initInBackground;
+
+    private CompletableFuture<GoogleCredentials> credentialsFuture;
+    private CompletableFuture<Storage> storageFuture;
+    private CompletableFuture<TranscoderServiceClient> transcoderClientFuture;
+
+    @PostConstruct
+    public void startBackgroundInit() {
+        if (!initInBackground) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "cloud-client-init");
+            thread.setDaemon(true);
+            return thread;
+        });
+        credentialsFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadCredentials();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+        storageFuture = credentialsFuture.thenApplyAsync(this::buildStorage, executor);
+        transcoderClientFuture = credentialsFuture.thenApplyAsync(credentials -> {
+            try {
+                return buildTranscoderClient(credentials);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+        CompletableFuture.allOf(storageFuture, transcoderClientFuture).whenComplete((result, e) -> executor.shutdown());
+    }
+
+    // The client beans back off when another configuration, such as the load test's fakes, defines them
+    @Bean
+    @ConditionalOnMissingBean
+    public GoogleCredentials googleCredentials() throws IOException {
+        return credentialsFuture != null ? join(credentialsFuture) : loadCredentials();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public Storage storage(GoogleCredentials googleCredentials) {
+        return storageFuture != null ? join(storageFuture) : buildStorage(googleCredentials);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TranscoderServiceClient transcoderServiceClient(GoogleCredentials googleCredentials) throws IOException {
+        return transcoderClientFuture != null ? join(transcoderClientFuture) : buildTranscoderClient(googleCredentials);
+    }
+
+    private GoogleCredentials loadCredentials() throws IOException {
+        if (credentialsPath == null || credentialsPath.isEmpty()) {
+            throw new IllegalArgumentException("Credentials path is not configured properly.");
+        }
+
+        File credentialsFile = new File(credentialsPath.replace("\\", "/"));
+        if (!credentialsFile.exists()) {
+            throw new IllegalArgumentException("Credentials file not found at: " + credentialsPath);
+        }
+
+        try (FileInputStream credentialsStream = new FileInputStream(credentialsFile)) {
+            return GoogleCredentials.fromStream(credentialsStream).createScoped(CLOUD_PLATFORM_SCOPE);
+        }
+    }
+
+    private Storage buildStorage(GoogleCredentials googleCredentials) {
+        return StorageOptions.newBuilder().setCredentials(googleCredentials).build().getService();
+    }
+
+    private TranscoderServiceClient buildTranscoderClient(GoogleCredentials googleCredentials) throws IOException {
+        int poolSize = transcoderChannelPoolSize > 0
+                ? transcoderChannelPoolSize
+                : Math.max(1, (pollMaxBatchSize + STREAMS_PER_CHANNEL - 1) / STREAMS_PER_CHANNEL);
+
+        InstantiatingGrpcChannelProvider channelProvider = TranscoderServiceSettings.defaultGrpcTransportProviderBuilder()
+                .setChannelPoolSettings(ChannelPoolSettings.staticallySized(poolSize))
+                .setKeepAliveTimeDuration(Duration.ofMinutes(1))
+                .setKeepAliveWithoutCalls(true)
+                .build();
+
+        TranscoderServiceSettings settings = TranscoderServiceSettings.newBuilder()
+                .setCredentialsProvider(FixedCredentialsProvider.create(googleCredentials))
+                .setTransportChannelProvider(channelProvider)
+                .build();
+
+        logger.info("Creating Transcoder client with a pool of {} gRPC channels", poolSize);
+        return TranscoderServiceClient.create(settings);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the access token and opens connections before the first video arrives, so the first
+     * jobs do not pay for the token exchange and TLS handshakes. Failures only log a warning.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp(ApplicationReadyEvent event) {
+        if (!warmupEnabled) {
+            return;
+        }
+        if (warmupAsync) {
+            Thread thread = new Thread(() -> warmUpClients(event), "cloud-client-warmup");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            warmUpClients(event);
+        }
+    }
+
+    private void warmUpClients(ApplicationReadyEvent event) {
+        try {
+            event.getApplicationContext().getBean(GoogleCredentials.class).refreshIfExpired();
+
+            Storage storage = event.getApplicationContext().getBean(Storage.class);
+            storage.list(inputBucket, Storage.BlobListOption.pageSize(1));
+
+            TranscoderServiceClient transcoderClient = event.getApplicationContext().getBean(TranscoderServiceClient.class);
+            transcoderClient.listJobsCallable().call(ListJobsRequest.newBuilder()
+                    .setParent(String.format("projects/%s/locations/%s", projectId, location))
+                    .setPageSize(1)
+                    .build());
+
+            logger.info("Google Cloud clients warmed up.");
+        } catch (Exception e) {
+            logger.warn("Google Cloud client warm-up failed; connections will be established on first use.", e);
+        }
+    }
+}
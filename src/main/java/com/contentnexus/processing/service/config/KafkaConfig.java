@@ -1,43 +1,189 @@
 package com.contentnexus.processing.service.config;
 
+import com.contentnexus.processing.service.entity.ContentProcessedEvent;
 import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.service.IngestDispatcher;
+import com.contentnexus.processing.service.service.ProcessingRetryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
 public class KafkaConfig {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${processing.ingest.listener-concurrency:1}")
+    private int listenerConcurrency;
+
+    @Value("${processing.ingest.max-poll-records:16}")
+    private int maxPollRecords;
+
+    @Value("${processing.events.topic:content_processed}")
+    private String eventsTopic;
+
+    @Value("${spring.kafka.topics.content_processed.partitions:3}")
+    private int eventsTopicPartitions;
+
+    @Value("${spring.kafka.topics.content_processed.replication-factor:1}")
+    private short eventsTopicReplicationFactor;
+
+    @Value("${processing.retry.partitions:3}")
+    private int retryTopicPartitions;
+
+    @Value("${processing.retry.replication-factor:1}")
+    private short retryTopicReplicationFactor;
+
+    @Value("${processing.events.linger-ms:20}")
+    private int eventsLingerMillis;
+
+    @Value("${processing.events.batch-size:65536}")
+    private int eventsBatchSize;
+
+    @Value("${processing.events.compression:lz4}")
+    private String eventsCompression;
+
+    public KafkaConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Bean
     public ConsumerFactory<String, ProcessedContent> consumerFactory() {
+        DefaultKafkaConsumerFactory<String, ProcessedContent> consumerFactory =
+                new DefaultKafkaConsumerFactory<>(consumerConfigs(), new StringDeserializer(), processedContentDeserializer());
+        // Publishes the client's own metrics, including records-lag-max per partition, as kafka.consumer.*
+        consumerFactory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return consumerFactory;
+    }
+
+    // Shared with the decoding benchmark, so it measures exactly what the listener runs
+    public static JsonDeserializer<ProcessedContent> processedContentDeserializer() {
         JsonDeserializer<ProcessedContent> deserializer = new JsonDeserializer<>(ProcessedContent.class);
         deserializer.addTrustedPackages("*");
         deserializer.setUseTypeHeaders(false);
-        return new DefaultKafkaConsumerFactory<>(consumerConfigs(), new StringDeserializer(), deserializer);
+        return deserializer;
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, ProcessedContent> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, ProcessedContent> kafkaListenerContainerFactory(IngestDispatcher ingestDispatcher) {
         ConcurrentKafkaListenerContainerFactory<String, ProcessedContent> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(listenerConcurrency);
+        // Records are processed off the consumer thread; the dispatcher acknowledges them in order once done
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(ingestDispatcher);
+        return factory;
+    }
+
+    /**
+     * For the retry topics, whose records are requeued in order as they come due. Acknowledgements
+     * are synchronous, unlike the ingest listener's.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ProcessedContent> retryListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ProcessedContent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         return factory;
     }
 
     @Bean
     public Map<String, Object> consumerConfigs() {
         Map<String, Object> props = new HashMap<>();
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "content-processing-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // Keeps the overshoot past the queue limit to one small poll while a topic pauses
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         return props;
     }
 
+    @Bean
+    public NewTopic contentProcessedTopic() {
+        return new NewTopic(eventsTopic, eventsTopicPartitions, eventsTopicReplicationFactor);
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics(ProcessingRetryService retryService) {
+        return new KafkaAdmin.NewTopics(Arrays.stream(retryService.getRetryTopics())
+                .map(topic -> new NewTopic(topic, retryTopicPartitions, retryTopicReplicationFactor))
+                .toArray(NewTopic[]::new));
+    }
+
+    @Bean
+    public NewTopic deadLetterTopic(ProcessingRetryService retryService) {
+        return new NewTopic(retryService.getDeadLetterTopic(), retryTopicPartitions, retryTopicReplicationFactor);
+    }
+
+    @Bean
+    public ProducerFactory<String, ContentProcessedEvent> eventProducerFactory() {
+        JsonSerializer<ContentProcessedEvent> serializer = new JsonSerializer<>();
+        // Consumers live in other services; they bind the payload by shape, not by our class name
+        serializer.setAddTypeInfo(false);
+        DefaultKafkaProducerFactory<String, ContentProcessedEvent> producerFactory =
+                new DefaultKafkaProducerFactory<>(producerConfigs(), new StringSerializer(), serializer);
+        producerFactory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return producerFactory;
+    }
+
+    @Bean
+    public KafkaTemplate<String, ContentProcessedEvent> eventKafkaTemplate() {
+        return new KafkaTemplate<>(eventProducerFactory());
+    }
+
+    // Retries and dead letters carry the ingested payload unchanged, so it is written as consumed
+    @Bean
+    public ProducerFactory<String, ProcessedContent> contentProducerFactory() {
+        JsonSerializer<ProcessedContent> serializer = new JsonSerializer<>();
+        serializer.setAddTypeInfo(false);
+        DefaultKafkaProducerFactory<String, ProcessedContent> producerFactory =
+                new DefaultKafkaProducerFactory<>(producerConfigs(), new StringSerializer(), serializer);
+        producerFactory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return producerFactory;
+    }
+
+    @Bean
+    public KafkaTemplate<String, ProcessedContent> contentKafkaTemplate() {
+        return new KafkaTemplate<>(contentProducerFactory());
+    }
+
+    private Map<String, Object> producerConfigs() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // Idempotent, so producer retries neither duplicate nor reorder events per partition
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        // Completions arrive in bursts as flushes land; a short linger packs them into compressed batches
+        props.put(ProducerConfig.LINGER_MS_CONFIG, eventsLingerMillis);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, eventsBatchSize);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, eventsCompression);
+        return props;
+    }
 }
@@ -0,0 +1,67 @@
+package com.contentnexus.processing.service.config;
+
+import com.contentnexus.processing.service.service.ContentDeduplicationService;
+import com.contentnexus.processing.service.service.IngestDispatcher;
+import com.contentnexus.processing.service.service.ProcessedContentWriteBuffer;
+import com.contentnexus.processing.service.service.ProcessingLeaseService;
+import com.contentnexus.processing.service.service.ScratchSpaceManager;
+import com.contentnexus.processing.service.service.TranscoderJobPoller;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exposes the services' own counters as gauges. Timers and counters recorded on the hot path are
+ * registered by the services themselves; all meters are scraped from /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder processingGauges(IngestDispatcher ingestDispatcher, TranscoderJobPoller transcoderJobPoller,
+                                        ProcessedContentWriteBuffer writeBuffer, ScratchSpaceManager scratchSpaceManager,
+                                        ProcessingLeaseService leaseService) {
+        return registry -> {
+            Gauge.builder("processing.ingest.in-flight", ingestDispatcher, IngestDispatcher::getInFlightCount)
+                    .description("Videos taken from Kafka and not yet finished")
+                    .register(registry);
+            Gauge.builder("transcoder.jobs.in-flight", transcoderJobPoller, TranscoderJobPoller::getInFlightCount)
+                    .description("Transcoder jobs being polled")
+                    .register(registry);
+            Gauge.builder("processing.leases.held", leaseService, ProcessingLeaseService::getHeldCount)
+                    .register(registry);
+
+            Gauge.builder("metadata.buffer.pending", writeBuffer, ProcessedContentWriteBuffer::getPendingCount)
+                    .register(registry);
+            Gauge.builder("metadata.buffer.last-flush.duration", writeBuffer, ProcessedContentWriteBuffer::getLastFlushDurationMillis)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("metadata.buffer.last-flush.delay", writeBuffer, ProcessedContentWriteBuffer::getLastFlushDelayMillis)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("metadata.buffer.last-flush.size", writeBuffer, ProcessedContentWriteBuffer::getLastFlushSize)
+                    .register(registry);
+
+            Gauge.builder("scratch.used", scratchSpaceManager, ScratchSpaceManager::getUsedBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("scratch.cached", scratchSpaceManager, ScratchSpaceManager::getCachedBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder deduplicationCounters(ContentDeduplicationService deduplicationService) {
+        return registry -> {
+            FunctionCounter.builder("processing.dedup.lookups", deduplicationService, ContentDeduplicationService::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("processing.dedup.lookups", deduplicationService, ContentDeduplicationService::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+}
@@ -1,40 +1,117 @@
-/*package com.contentnexus.processing.service.config;
+package com.contentnexus.processing.service.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3CrtAsyncClientBuilder;
+import software.amazon.awssdk.services.s3.crt.S3CrtConnectionHealthConfiguration;
+import software.amazon.awssdk.services.s3.crt.S3CrtHttpConfiguration;
+import software.amazon.awssdk.services.s3.crt.S3CrtRetryConfiguration;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
 
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Builds the S3 clients when {@code processing.archive.store=s3}. Transfers go through the
+ * AWS CRT client, which splits uploads into parallel multipart parts and downloads into parallel
+ * ranged GETs of the configured part size, sized to reach the target throughput. An endpoint
+ * override with path-style access points the clients at S3-compatible stores or a local fake.
+ */
 @Configuration
+@ConditionalOnProperty(name = "processing.archive.store", havingValue = "s3")
 public class S3Config {
-    @Value("${cloud.aws.credentials.access-key}")
+    private static final Logger logger = LoggerFactory.getLogger(S3Config.class);
+
+    // Empty keys fall back to the default chain: environment, profile, container or instance role
+    @Value("${cloud.aws.credentials.access-key:}")
     private String accessKey;
 
-    @Value("${cloud.aws.credentials.secret-key}")
+    @Value("${cloud.aws.credentials.secret-key:}")
     private String secretKey;
 
     @Value("${cloud.aws.region.static}")
     private String region;
 
-    @Bean
-    public S3Client s3Client() {
-        AwsBasicCredentials awsCreds = AwsBasicCredentials.create(accessKey, secretKey);
+    @Value("${cloud.aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${cloud.aws.s3.path-style-access:false}")
+    private boolean pathStyleAccess;
+
+    @Value("${cloud.aws.s3.target-throughput-gbps:10}")
+    private double targetThroughputGbps;
+
+    // Also the multipart threshold and the range size of parallel GETs
+    @Value("${cloud.aws.s3.part-size:16777216}")
+    private long partSize;
+
+    // 0 lets the CRT size the connection pool from the target throughput
+    @Value("${cloud.aws.s3.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${cloud.aws.s3.connect-timeout-millis:5000}")
+    private long connectTimeoutMillis;
+
+    // A connection slower than this for the timeout below is dropped and its part retried
+    @Value("${cloud.aws.s3.minimum-throughput-bps:65536}")
+    private long minimumThroughputBps;
+
+    @Value("${cloud.aws.s3.minimum-throughput-timeout-millis:10000}")
+    private long minimumThroughputTimeoutMillis;
 
-        return S3Client.builder()
+    @Value("${cloud.aws.s3.max-retries:5}")
+    private int maxRetries;
+
+    @Bean
+    public S3AsyncClient s3AsyncClient() {
+        S3CrtAsyncClientBuilder builder = S3AsyncClient.crtBuilder()
                 .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(awsCreds))
-                .serviceConfiguration(S3Configuration.builder()
-                        .checksumValidationEnabled(true)  // Enable checksum validation for added security
-                        .chunkedEncodingEnabled(true)  // Enable chunked encoding for large files
+                .credentialsProvider(credentialsProvider())
+                .targetThroughputInGbps(targetThroughputGbps)
+                .minimumPartSizeInBytes(partSize)
+                .thresholdInBytes(partSize)
+                .checksumValidationEnabled(true)
+                .forcePathStyle(pathStyleAccess)
+                .httpConfiguration(S3CrtHttpConfiguration.builder()
+                        .connectionTimeout(Duration.ofMillis(connectTimeoutMillis))
+                        .connectionHealthConfiguration(S3CrtConnectionHealthConfiguration.builder()
+                                .minimumThroughputInBps(minimumThroughputBps)
+                                .minimumThroughputTimeout(Duration.ofMillis(minimumThroughputTimeoutMillis))
+                                .build())
                         .build())
-                .build();
-    }
+                // Failed parts are retried by the CRT with exponential backoff and jitter
+                .retryConfiguration(S3CrtRetryConfiguration.builder().numRetries(maxRetries).build());
 
-}
+        if (maxConcurrency > 0) {
+            builder.maxConcurrency(maxConcurrency);
+        }
+        if (!endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+
+        logger.info("Creating S3 CRT client for region {} targeting {} Gbps with {} byte parts", region, targetThroughputGbps, partSize);
+        return builder.build();
+    }
 
+    @Bean
+    public S3TransferManager s3TransferManager(S3AsyncClient s3AsyncClient) {
+        return S3TransferManager.builder().s3Client(s3AsyncClient).build();
+    }
 
- */
\ No newline at end of file
+    private AwsCredentialsProvider credentialsProvider() {
+        if (accessKey.isEmpty() || secretKey.isEmpty()) {
+            return DefaultCredentialsProvider.create();
+        }
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+    }
+}
@@ -0,0 +1,73 @@
+package com.contentnexus.processing.service.controller;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.service.ContentStatusService;
+import com.contentnexus.processing.service.service.ContentStatusService.ContentStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Processing status for clients that poll. Responses carry an ETag, and a request whose
+ * If-None-Match still matches gets a 304 without a body.
+ */
+@RestController
+@RequestMapping("/api/content")
+public class ContentStatusController {
+
+    private final ContentStatusService contentStatusService;
+
+    @Value("${processing.status.max-batch-size:200}")
+    private int maxBatchSize;
+
+    public ContentStatusController(ContentStatusService contentStatusService) {
+        this.contentStatusService = contentStatusService;
+    }
+
+    @GetMapping("/{videoId}/status")
+    public ResponseEntity<ProcessedContent> getStatus(@PathVariable String videoId, WebRequest request) {
+        ContentStatus status = contentStatusService.getStatus(videoId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown video " + videoId));
+        if (request.checkNotModified(status.etag())) {
+            return null;  // 304 already written
+        }
+        return ResponseEntity.ok().eTag(status.etag()).body(status.content());
+    }
+
+    /**
+     * Statuses of several videos, keyed by video ID. Unknown videos are left out.
+     */
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, ProcessedContent>> getStatuses(@RequestParam Set<String> videoIds, WebRequest request) {
+        if (videoIds.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxBatchSize + " video IDs per request, got " + videoIds.size());
+        }
+        Map<String, ContentStatus> statuses = contentStatusService.getStatuses(new LinkedHashSet<>(videoIds));
+
+        CRC32C checksum = new CRC32C();
+        Map<String, ProcessedContent> body = new LinkedHashMap<>();
+        statuses.forEach((videoId, status) -> {
+            checksum.update(status.etag().getBytes());
+            body.put(videoId, status.content());
+        });
+        String etag = "\"" + Long.toHexString(checksum.getValue()) + "-" + body.size() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(body);
+    }
+}
@@ -0,0 +1,55 @@
+package com.contentnexus.processing.service.controller;
+
+import com.contentnexus.processing.service.service.DeadLetterReplayService;
+import com.contentnexus.processing.service.service.DeadLetterReplayService.ReplayStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts, watches and stops the replay of dead-lettered videos. One replay runs at a time.
+ * Served as an actuator endpoint, so it is only reachable once exposed, and then on the
+ * management port rather than next to the public API.
+ */
+@Component
+@WebEndpoint(id = "deadLetterReplay")
+public class DeadLetterReplayEndpoint {
+
+    private final DeadLetterReplayService replayService;
+
+    @Value("${processing.retry.replay.default-rate:5}")
+    private double defaultRatePerSecond;
+
+    public DeadLetterReplayEndpoint(DeadLetterReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Object> start(long maxRecords, @Nullable Double ratePerSecond) {
+        try {
+            ReplayStatus status = replayService.start(maxRecords, ratePerSecond != null ? ratePerSecond : defaultRatePerSecond);
+            return new WebEndpointResponse<>(status, HttpStatus.ACCEPTED.value());
+        } catch (IllegalArgumentException e) {
+            return new WebEndpointResponse<>(e.getMessage(), HttpStatus.BAD_REQUEST.value());
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(e.getMessage(), HttpStatus.CONFLICT.value());
+        }
+    }
+
+    @ReadOperation
+    public ReplayStatus status() {
+        return replayService.getStatus();
+    }
+
+    @DeleteOperation
+    public ReplayStatus stop() {
+        replayService.stop();
+        return replayService.getStatus();
+    }
+}
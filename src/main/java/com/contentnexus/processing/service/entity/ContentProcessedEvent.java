@@ -0,0 +1,45 @@
+package com.contentnexus.processing.service.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Published on {@code content_processed} once a video reaches a terminal status. Delivery is at
+ * least once; consumers drop repeats by {@code eventId}.
+ */
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContentProcessedEvent {
+
+    private String eventId;
+    private String videoId;
+    private String status;               // "Processed" or "Failed"
+    private String processedVideoPath;
+    private List<String> manifestUris;
+    private List<Rendition> renditions;
+    private String errorDetails;
+    @Indexed(sparse = true)              // as ProcessedContent.pendingEvent, found by the relay's sweep
+    private Instant occurredAt;
+
+    public static ContentProcessedEvent of(ProcessedContent content) {
+        ContentProcessedEvent event = new ContentProcessedEvent();
+        event.setEventId(UUID.randomUUID().toString());
+        event.setVideoId(content.getVideoId());
+        event.setStatus(content.getStatus());
+        event.setProcessedVideoPath(content.getProcessedVideoPath());
+        event.setManifestUris(content.getManifestUris());
+        event.setRenditions(content.getRenditions());
+        event.setErrorDetails(content.getErrorDetails());
+        event.setOccurredAt(Instant.now());
+        return event;
+    }
+}
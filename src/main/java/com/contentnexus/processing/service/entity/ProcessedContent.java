@@ -1,27 +1,55 @@
 package com.contentnexus.processing.service.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Document(collection = "processedContents")
+@CompoundIndex(name = "fingerprint_template", def = "{'contentFingerprint': 1, 'templateId': 1}")
 public class ProcessedContent {
 
     @Id
     private String id;  // MongoDB uses String IDs by default
 
+    @Indexed(unique = true)
     private String videoId;
     private String rawVideoPath;
     private String templateId;
+    private String priority;  // ingest lane, e.g. "urgent"; unset uses the lane of the topic it arrived on
     private String processedVideoPath;
     private String status;
     private String encodingDetails;
     private String errorDetails;
+    private String contentFingerprint;  // MD5/CRC32C of the raw video, used to skip duplicate transcodes
+    private List<Rendition> renditions;  // every output the transcode produced, for per-viewer selection
+    private List<String> manifestUris;   // HLS/DASH manifests referencing the segmented renditions
+    private ProcessingStage processingStage;  // last completed step, for resuming after a restart
+    private String transcodingEngine;         // engine that runs the job; null for the Transcoder API
+    private String transcoderJobName;         // set once the job is created, so a restart can re-attach to it
+    private List<TranscodeSegment> transcodeSegments;  // per-segment jobs when a long video is transcoded in parts
+    private Integer retryCount;   // retries scheduled after transient failures; reset when replayed from the dead-letter topic
+    private String failedStage;   // pipeline stage of the last failure
+
+    // Outbox entry, written in the same update as the terminal status and removed once published
+    @JsonIgnore
+    private ContentProcessedEvent pendingEvent;
+
+    // Processing lease, only ever written through ProcessedContentRepository's lease operations
+    @JsonIgnore
+    private String leaseOwner;
+    @JsonIgnore
+    private Instant leaseExpiresAt;
 }
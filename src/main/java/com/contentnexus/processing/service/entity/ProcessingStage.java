@@ -0,0 +1,17 @@
+package com.contentnexus.processing.service.entity;
+
+/**
+ * Last processing step a video has durably completed, in pipeline order. A restarted pod resumes
+ * the video after this step instead of starting over.
+ */
+public enum ProcessingStage {
+    FINGERPRINTED,
+    RAW_ARCHIVED,
+    TRANSCODE_SUBMITTED,
+    TRANSCODED,
+    OUTPUT_ARCHIVED;
+
+    public boolean isReachedBy(ProcessingStage current) {
+        return current != null && current.compareTo(this) >= 0;
+    }
+}
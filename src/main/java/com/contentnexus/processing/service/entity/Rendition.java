@@ -0,0 +1,22 @@
+package com.contentnexus.processing.service.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Rendition {
+
+    private String key;
+    private String uri;          // file URI, or the segment prefix when segmented
+    private String container;    // mp4, fmp4, ts, ...
+    private boolean segmented;   // served through a manifest rather than as a single file
+    private String codec;
+    private Integer widthPixels;
+    private Integer heightPixels;
+    private Integer bitrateBps;
+}
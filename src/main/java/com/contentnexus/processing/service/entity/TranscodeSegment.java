@@ -0,0 +1,19 @@
+package com.contentnexus.processing.service.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TranscodeSegment {
+
+    private int index;
+    private long startMillis;    // offset into the raw video
+    private Long endMillis;      // null for the last segment, which runs to the end of the video
+    private String jobName;      // Transcoder job of the latest attempt
+    private int attempts;
+}
@@ -0,0 +1,13 @@
+package com.contentnexus.processing.service.pipeline;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Work done by a stage that waits on an external system without holding a thread. The handler
+ * must return quickly; the stage finishes when the returned future completes.
+ */
+@FunctionalInterface
+public interface AsyncStageHandler {
+
+    CompletableFuture<?> handle(VideoContext context);
+}
@@ -0,0 +1,103 @@
+package com.contentnexus.processing.service.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One step of the {@link VideoPipeline}. Blocking stages own a fixed-size executor with a bounded
+ * queue, so each stage can be sized to its own bottleneck; when the queue is full, the submitting
+ * thread waits for space. Async stages only register a continuation, and hand each completion to
+ * a thread of their own: the completing thread, such as a gRPC callback, must never be the one
+ * that waits for room in the next stage.
+ */
+public final class PipelineStage {
+
+    private final String name;
+    private final ExecutorService executor;
+    private final StageHandler handler;
+    private final AsyncStageHandler asyncHandler;
+
+    private PipelineStage(String name, ExecutorService executor, StageHandler handler, AsyncStageHandler asyncHandler) {
+        this.name = name;
+        this.executor = executor;
+        this.handler = handler;
+        this.asyncHandler = asyncHandler;
+    }
+
+    public static PipelineStage blocking(String name, int concurrency, int queueCapacity, StageHandler handler) {
+        return new PipelineStage(name, boundedExecutor(name, concurrency, queueCapacity), handler, null);
+    }
+
+    public static PipelineStage async(String name, AsyncStageHandler handler) {
+        // Unbounded, but holds at most one completion per video in flight
+        ExecutorService handoff = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "pipeline-" + name + "-handoff"));
+        return new PipelineStage(name, handoff, null, handler);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    CompletableFuture<VideoContext> run(VideoContext context) {
+        if (asyncHandler != null) {
+            CompletableFuture<?> result;
+            try {
+                result = asyncHandler.handle(context);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(new StageFailureException(name, e));
+            }
+            return result.handleAsync((ignored, e) -> {
+                if (e != null) {
+                    throw new StageFailureException(name, unwrap(e));
+                }
+                return context;
+            }, executor);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                handler.handle(context);
+                return context;
+            } catch (Exception e) {
+                throw new StageFailureException(name, e);
+            }
+        }, executor);
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    static ExecutorService boundedExecutor(String name, int concurrency, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> new Thread(runnable, "pipeline-" + name + "-" + threadCount.incrementAndGet());
+
+        return new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, (task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Stage '" + name + "' is shut down");
+            }
+            try {
+                // Backpressure: hold the upstream thread until the stage has room
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while queueing work for stage '" + name + "'", e);
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -0,0 +1,15 @@
+package com.contentnexus.processing.service.pipeline;
+
+public class StageFailureException extends RuntimeException {
+
+    private final String stage;
+
+    public StageFailureException(String stage, Throwable cause) {
+        super("Stage '" + stage + "' failed: " + cause.getMessage(), cause);
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,10 @@
+package com.contentnexus.processing.service.pipeline;
+
+/**
+ * Work done by a stage that runs on the stage's own executor.
+ */
+@FunctionalInterface
+public interface StageHandler {
+
+    void handle(VideoContext context) throws Exception;
+}
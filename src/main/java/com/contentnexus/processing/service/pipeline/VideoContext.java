@@ -0,0 +1,39 @@
+package com.contentnexus.processing.service.pipeline;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.service.ScratchSpaceManager;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Per-video state handed from one pipeline stage to the next.
+ */
+@Getter
+@Setter
+public class VideoContext {
+
+    private final ProcessedContent content;
+    private String gcsInputUri;
+    private String rawFileName;
+    private String gcsOutputUri;
+
+    // Ingest topic the video arrived on, where its retries go back to; null when resumed by the sweeper
+    private String sourceTopic;
+
+    // Probed by the engine router when the choice of engine depends on it
+    private Double durationSeconds;
+
+    // Opened by the first stage that needs local files; closed when the video leaves the pipeline
+    private ScratchSpaceManager.Workspace workspace;
+
+    // Set by a stage that has finished the video early; the remaining stages are skipped
+    private boolean completed;
+
+    public VideoContext(ProcessedContent content) {
+        this.content = content;
+    }
+
+    public String getVideoId() {
+        return content.getVideoId();
+    }
+}
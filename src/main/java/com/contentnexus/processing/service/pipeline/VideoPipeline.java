@@ -0,0 +1,97 @@
+package com.contentnexus.processing.service.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs each video through an ordered list of stages. Every stage hands the per-video context to
+ * the next one, so one video's network wait overlaps with other videos' work in other stages.
+ * A failure skips the remaining stages and is passed to the failure handler on its own executor.
+ */
+public class VideoPipeline implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VideoPipeline.class);
+
+    private final List<PipelineStage> stages;
+    private final BiConsumer<VideoContext, StageFailureException> failureHandler;
+    private final ExecutorService failureExecutor;
+
+    private VideoPipeline(Builder builder) {
+        this.stages = List.copyOf(builder.stages);
+        this.failureHandler = builder.failureHandler;
+        this.failureExecutor = PipelineStage.boundedExecutor("failure", builder.failureConcurrency, builder.failureQueueCapacity);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts the video on the first stage. The returned future completes after the last stage, or
+     * after the failure handler has run. It completes exceptionally only if the failure handler
+     * throws, i.e. the failure could not be recorded.
+     */
+    public CompletableFuture<VideoContext> submit(VideoContext context) {
+        CompletableFuture<VideoContext> result = CompletableFuture.completedFuture(context);
+        for (PipelineStage stage : stages) {
+            result = result.thenCompose(current -> current.isCompleted() ? CompletableFuture.completedFuture(current) : stage.run(current));
+        }
+
+        return result.handle((ignored, e) -> e).thenCompose(failure -> failure == null
+                ? CompletableFuture.completedFuture(context)
+                : CompletableFuture.supplyAsync(() -> {
+                    handleFailure(context, failure);
+                    return context;
+                }, failureExecutor));
+    }
+
+    private void handleFailure(VideoContext context, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        try {
+            failureHandler.accept(context, cause instanceof StageFailureException stageFailure
+                    ? stageFailure
+                    : new StageFailureException("pipeline", cause));
+        } catch (RuntimeException e) {
+            logger.error("Failure handler failed for video ID: {}", context.getVideoId(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        stages.forEach(PipelineStage::shutdown);
+        failureExecutor.shutdown();
+    }
+
+    public static class Builder {
+        private final List<PipelineStage> stages = new ArrayList<>();
+        private BiConsumer<VideoContext, StageFailureException> failureHandler;
+        private int failureConcurrency = 1;
+        private int failureQueueCapacity = 256;
+
+        public Builder stage(PipelineStage stage) {
+            stages.add(stage);
+            return this;
+        }
+
+        public Builder onFailure(BiConsumer<VideoContext, StageFailureException> failureHandler, int concurrency, int queueCapacity) {
+            this.failureHandler = failureHandler;
+            this.failureConcurrency = concurrency;
+            this.failureQueueCapacity = queueCapacity;
+            return this;
+        }
+
+        public VideoPipeline build() {
+            if (failureHandler == null) {
+                throw new IllegalStateException("A failure handler is required");
+            }
+            return new VideoPipeline(this);
+        }
+    }
+}
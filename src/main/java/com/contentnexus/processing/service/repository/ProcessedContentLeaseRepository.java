@@ -0,0 +1,29 @@
+package com.contentnexus.processing.service.repository;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Atomic claim, renewal and release of the per-video processing lease.
+ */
+public interface ProcessedContentLeaseRepository {
+
+    /**
+     * Claims the video for {@code owner} if it is unclaimed, its lease has expired or it is already
+     * held by {@code owner}, creating the record if it does not exist yet. Returns the claimed
+     * record, or empty if another owner holds a live lease or the video has been processed.
+     */
+    Optional<ProcessedContent> claim(String videoId, String owner, Duration leaseDuration);
+
+    /**
+     * Extends every lease among {@code videoIds} that {@code owner} still holds, in one write, and
+     * returns the IDs whose lease was extended; the others have been taken over.
+     */
+    Set<String> renew(Collection<String> videoIds, String owner, Duration leaseDuration);
+
+    void release(String videoId, String owner);
+}
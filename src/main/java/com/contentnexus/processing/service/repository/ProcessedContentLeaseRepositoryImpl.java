@@ -0,0 +1,69 @@
+package com.contentnexus.processing.service.repository;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class ProcessedContentLeaseRepositoryImpl implements ProcessedContentLeaseRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    ProcessedContentLeaseRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<ProcessedContent> claim(String videoId, String owner, Duration leaseDuration) {
+        Instant now = Instant.now();
+        Query claimable = Query.query(Criteria.where("videoId").is(videoId)
+                .and("status").ne("Processed")
+                .orOperator(
+                        Criteria.where("leaseOwner").is(null),
+                        // Taking a lease back after a restart; ProcessingLeaseService refuses re-entry within one run
+                        Criteria.where("leaseOwner").is(owner),
+                        Criteria.where("leaseExpiresAt").lt(now)));
+        Update lease = new Update()
+                .set("leaseOwner", owner)
+                .set("leaseExpiresAt", now.plus(leaseDuration))
+                .setOnInsert("videoId", videoId);
+
+        try {
+            return Optional.ofNullable(mongoTemplate.findAndModify(claimable, lease,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), ProcessedContent.class));
+        } catch (DuplicateKeyException e) {
+            // The record exists but did not match: leased by someone else or already processed
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Set<String> renew(Collection<String> videoIds, String owner, Duration leaseDuration) {
+        Query held = Query.query(Criteria.where("videoId").in(videoIds).and("leaseOwner").is(owner));
+        Update lease = Update.update("leaseExpiresAt", Instant.now().plus(leaseDuration));
+        if (mongoTemplate.updateMulti(held, lease, ProcessedContent.class).getMatchedCount() == videoIds.size()) {
+            return Set.copyOf(videoIds);
+        }
+        // Some leases were taken over; only then look up which ones are still held
+        held.fields().include("videoId");
+        return mongoTemplate.find(held, ProcessedContent.class).stream()
+                .map(ProcessedContent::getVideoId)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void release(String videoId, String owner) {
+        Query held = Query.query(Criteria.where("videoId").is(videoId).and("leaseOwner").is(owner));
+        mongoTemplate.updateFirst(held, new Update().unset("leaseOwner").unset("leaseExpiresAt"), ProcessedContent.class);
+    }
+}
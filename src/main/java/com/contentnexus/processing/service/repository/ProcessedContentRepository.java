@@ -1,7 +1,30 @@
 package com.contentnexus.processing.service.repository;
 
 import com.contentnexus.processing.service.entity.ProcessedContent;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReadPreference;
 
-public interface ProcessedContentRepository extends MongoRepository<ProcessedContent, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProcessedContentRepository extends MongoRepository<ProcessedContent, String>, ProcessedContentLeaseRepository {
+
+    Optional<ProcessedContent> findFirstByContentFingerprintAndTemplateIdAndStatus(String contentFingerprint, String templateId, String status);
+
+    List<ProcessedContent> findByStatusAndProcessingStageNotNull(String status, Pageable pageable);
+
+    // Status reads for the query API: only the client-facing fields, from a secondary when there is one
+    String STATUS_FIELDS = "{'videoId': 1, 'status': 1, 'processingStage': 1, 'processedVideoPath': 1, "
+            + "'manifestUris': 1, 'renditions': 1, 'errorDetails': 1, 'retryCount': 1, 'failedStage': 1, '_id': 0}";
+
+    @ReadPreference("secondaryPreferred")
+    @Query(value = "{'videoId': ?0}", fields = STATUS_FIELDS)
+    Optional<ProcessedContent> findStatusByVideoId(String videoId);
+
+    @ReadPreference("secondaryPreferred")
+    @Query(value = "{'videoId': {'$in': ?0}}", fields = STATUS_FIELDS)
+    List<ProcessedContent> findStatusByVideoIdIn(Collection<String> videoIds);
 }
@@ -0,0 +1,205 @@
+package com.contentnexus.processing.service.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs the calls to one backend through its adaptive concurrency limit, retries the retryable
+ * failures with jittered backoff and holds calls back while its circuit breaker is open. Waiting
+ * for an open breaker does not use up attempts, so an outage delays videos instead of failing them.
+ */
+public class BackendGuard {
+    private static final Logger logger = LoggerFactory.getLogger(BackendGuard.class);
+    // How often an asynchronous call checks again for a free permit
+    private static final long ADMISSION_RECHECK_MILLIS = 20;
+    private static final long MAX_BREAKER_WAIT_MILLIS = 1000;
+
+    public enum Outcome {
+        SUCCESS,
+        THROTTLED,    // quota or rate limit; retried, and lowers the concurrency limit
+        UNAVAILABLE,  // transient server or network error; retried
+        FAILED        // not retryable
+    }
+
+    private final String name;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final RetryBackoff backoff;
+    private final BiFunction<String, Throwable, Outcome> classifier;
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry meterRegistry;
+
+    public BackendGuard(String name, AdaptiveConcurrencyLimiter limiter, CircuitBreaker breaker, RetryBackoff backoff,
+                        BiFunction<String, Throwable, Outcome> classifier, ScheduledExecutorService scheduler,
+                        MeterRegistry meterRegistry) {
+        this.name = name;
+        this.limiter = limiter;
+        this.breaker = breaker;
+        this.backoff = backoff;
+        this.classifier = classifier;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public void run(String operation, Runnable call) {
+        call(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a blocking call, retrying it while it fails retryably. The last failure is rethrown
+     * unchanged once the attempts are used up.
+     */
+    public <T> T call(String operation, Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                awaitBreaker();
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting to call " + name, e);
+            }
+
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                Outcome outcome = record(operation, e);
+                if (outcome == Outcome.FAILED || attempt >= backoff.maxAttempts()) {
+                    throw e;
+                }
+                long delay = backoff.delayMillis(attempt);
+                logger.warn("{} {} failed ({}), retrying in {} ms (attempt {})", name, operation, outcome, delay, attempt, e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                continue;
+            }
+            record(operation, null);
+            return result;
+        }
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #call}: waiting for a permit, an open breaker or a retry
+     * happens on the shared scheduler, never on the calling thread.
+     */
+    public <T> CompletableFuture<T> callAsync(String operation, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(operation, call, 1, result);
+        return result;
+    }
+
+    private <T> void attemptAsync(String operation, Supplier<CompletableFuture<T>> call, int attempt,
+                                  CompletableFuture<T> result) {
+        // Permit first: a half-open breaker admits a single probe, which must not then wait for a permit
+        if (!limiter.tryAcquire()) {
+            scheduler.schedule(() -> attemptAsync(operation, call, attempt, result), ADMISSION_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        long breakerWait = breaker.waitMillis();
+        if (breakerWait > 0) {
+            limiter.onIgnored();
+            scheduler.schedule(() -> attemptAsync(operation, call, attempt, result),
+                    Math.min(breakerWait, MAX_BREAKER_WAIT_MILLIS), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                record(operation, null);
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(e);
+            Outcome outcome = record(operation, cause);
+            if (outcome == Outcome.FAILED || attempt >= backoff.maxAttempts()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long delay = backoff.delayMillis(attempt);
+            logger.warn("{} {} failed ({}), retrying in {} ms (attempt {})", name, operation, outcome, delay, attempt, cause);
+            scheduler.schedule(() -> attemptAsync(operation, call, attempt + 1, result), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Classifies a failure of the operation as this guard would, e.g. to decide whether to try
+     * again later.
+     */
+    public Outcome classify(String operation, Throwable failure) {
+        return classifier.apply(operation, unwrap(failure));
+    }
+
+    private Outcome record(String operation, Throwable failure) {
+        Outcome outcome = failure == null ? Outcome.SUCCESS : classify(operation, failure);
+        switch (outcome) {
+            case SUCCESS -> {
+                limiter.onSuccess();
+                breaker.onSuccess();
+            }
+            case THROTTLED -> {
+                limiter.onThrottled();
+                breaker.onFailure();
+            }
+            case UNAVAILABLE -> {
+                limiter.onIgnored();
+                breaker.onFailure();
+            }
+            // The backend answered, so it counts as healthy
+            case FAILED -> {
+                limiter.onIgnored();
+                breaker.onSuccess();
+            }
+        }
+        meterRegistry.counter("resilience.calls", "backend", name, "operation", operation, "outcome", outcome.name())
+                .increment();
+        return outcome;
+    }
+
+    private void awaitBreaker() throws InterruptedException {
+        long wait;
+        while ((wait = breaker.waitMillis()) > 0) {
+            Thread.sleep(Math.min(wait, MAX_BREAKER_WAIT_MILLIS));
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,175 @@
+package com.contentnexus.processing.service.resilience;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.storage.StorageException;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * The {@link BackendGuard}s for Google Cloud Storage and the Transcoder API, configured under
+ * {@code processing.resilience.<backend>.*}. Listeners hear when a backend's breaker opens or
+ * closes, which is how the ingest dispatcher stops taking records during an outage.
+ */
+@Service
+public class BackendGuards {
+    private static final Logger logger = LoggerFactory.getLogger(BackendGuards.class);
+    private static final Set<Integer> TRANSIENT_HTTP_CODES = Set.of(408, 500, 502, 503, 504);
+    private static final Set<StatusCode.Code> TRANSIENT_GRPC_CODES = Set.of(StatusCode.Code.UNAVAILABLE,
+            StatusCode.Code.DEADLINE_EXCEEDED, StatusCode.Code.INTERNAL, StatusCode.Code.ABORTED);
+    // Creates are not idempotent: after these the job may exist, and a retry would start a second one
+    private static final Set<StatusCode.Code> AMBIGUOUS_GRPC_CODES = Set.of(StatusCode.Code.DEADLINE_EXCEEDED,
+            StatusCode.Code.INTERNAL);
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler;
+    private final List<BiConsumer<String, Boolean>> healthListeners = new CopyOnWriteArrayList<>();
+    private final BackendGuard gcs;
+    private final BackendGuard transcoder;
+
+    public BackendGuards(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "backend-guard-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.gcs = create("gcs", 32, 256, BackendGuards::classifyStorage);
+        this.transcoder = create("transcoder", 16, 128, BackendGuards::classifyGrpc);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public BackendGuard gcs() {
+        return gcs;
+    }
+
+    public BackendGuard transcoder() {
+        return transcoder;
+    }
+
+    /**
+     * Registers a callback that receives a backend's name and {@code true} when its breaker opens,
+     * {@code false} when it closes.
+     */
+    public void addHealthListener(BiConsumer<String, Boolean> listener) {
+        healthListeners.add(listener);
+    }
+
+    private BackendGuard create(String name, int defaultInitialLimit, int defaultMaxLimit,
+                                BiFunction<String, Throwable, BackendGuard.Outcome> classifier) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                setting(name, "initial-concurrency", Integer.class, defaultInitialLimit),
+                setting(name, "min-concurrency", Integer.class, 2),
+                setting(name, "max-concurrency", Integer.class, defaultMaxLimit),
+                setting(name, "backoff-ratio", Double.class, 0.7),
+                setting(name, "decrease-cooldown-millis", Long.class, 1000L));
+        CircuitBreaker breaker = new CircuitBreaker(
+                setting(name, "failure-threshold", Integer.class, 20),
+                setting(name, "open-millis", Long.class, 5000L),
+                setting(name, "max-open-millis", Long.class, 60000L));
+        RetryBackoff backoff = new RetryBackoff(
+                setting(name, "max-attempts", Integer.class, 6),
+                setting(name, "base-delay-millis", Long.class, 200L),
+                setting(name, "max-delay-millis", Long.class, 20000L));
+
+        breaker.addListener(open -> {
+            if (open) {
+                logger.warn("{} is failing, holding back calls to it", name);
+            } else {
+                logger.info("{} has recovered", name);
+            }
+            healthListeners.forEach(listener -> listener.accept(name, open));
+        });
+        Gauge.builder("resilience.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("backend", name)
+                .register(meterRegistry);
+        Gauge.builder("resilience.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("backend", name)
+                .register(meterRegistry);
+        Gauge.builder("resilience.circuit.open", breaker, b -> b.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("backend", name)
+                .register(meterRegistry);
+        return new BackendGuard(name, limiter, breaker, backoff, classifier, scheduler, meterRegistry);
+    }
+
+    private <T> T setting(String backend, String setting, Class<T> type, T defaultValue) {
+        return environment.getProperty("processing.resilience." + backend + "." + setting, type, defaultValue);
+    }
+
+    /**
+     * Adapts a gax future for {@link BackendGuard#callAsync}.
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    static BackendGuard.Outcome classifyStorage(String operation, Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StorageException storageException) {
+                if (storageException.getCode() == 429) {
+                    return BackendGuard.Outcome.THROTTLED;
+                }
+                if (TRANSIENT_HTTP_CODES.contains(storageException.getCode()) || storageException.isRetryable()) {
+                    return BackendGuard.Outcome.UNAVAILABLE;
+                }
+                return BackendGuard.Outcome.FAILED;
+            }
+        }
+        return BackendGuard.Outcome.FAILED;
+    }
+
+    static BackendGuard.Outcome classifyGrpc(String operation, Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException apiException) {
+                StatusCode.Code code = apiException.getStatusCode().getCode();
+                if (code == StatusCode.Code.RESOURCE_EXHAUSTED) {
+                    return BackendGuard.Outcome.THROTTLED;
+                }
+                if (operation.startsWith("create") && AMBIGUOUS_GRPC_CODES.contains(code)) {
+                    return BackendGuard.Outcome.FAILED;
+                }
+                if (TRANSIENT_GRPC_CODES.contains(code) || apiException.isRetryable()) {
+                    return BackendGuard.Outcome.UNAVAILABLE;
+                }
+                return BackendGuard.Outcome.FAILED;
+            }
+        }
+        return BackendGuard.Outcome.FAILED;
+    }
+}
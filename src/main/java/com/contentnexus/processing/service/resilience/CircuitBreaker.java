@@ -0,0 +1,129 @@
+package com.contentnexus.processing.service.resilience;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Opens after {@code failureThreshold} consecutive failed calls and stays open for
+ * {@code openMillis}. Then a single probe call is let through; its success closes the breaker,
+ * while a failure reopens it for twice as long, up to {@code maxOpenMillis}. A probe that has not
+ * reported back within {@code openMillis} is given up and another caller probes instead.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // How often callers queued behind a probe check whether it has reported back
+    private static final long PROBE_RECHECK_MILLIS = 100;
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long maxOpenMillis;
+    // Also the monitor that keeps deliveries in order; only taken while this breaker's lock is not held
+    private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long currentOpenMillis;
+    private long openUntil;
+    private long probeStartedAt;
+
+    // Guarded by listeners
+    private boolean notifiedOpen;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, long maxOpenMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.maxOpenMillis = Math.max(openMillis, maxOpenMillis);
+        this.currentOpenMillis = openMillis;
+    }
+
+    /**
+     * Registers a callback that receives {@code true} when the breaker opens and {@code false}
+     * when it closes again. Deliveries are made one at a time, and the last one always matches
+     * the breaker's current state.
+     */
+    public void addListener(Consumer<Boolean> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns how long a caller has to wait before trying, 0 if it may go ahead now. While half
+     * open, only the probe gets 0.
+     */
+    public synchronized long waitMillis() {
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case CLOSED -> {
+                return 0;
+            }
+            case OPEN -> {
+                long remaining = openUntil - now;
+                if (remaining > 0) {
+                    return remaining;
+                }
+                state = State.HALF_OPEN;
+            }
+            case HALF_OPEN -> {
+                if (now - probeStartedAt < openMillis) {
+                    return PROBE_RECHECK_MILLIS;
+                }
+            }
+        }
+        probeStartedAt = now;
+        return 0;
+    }
+
+    public void onSuccess() {
+        boolean closed;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            closed = state != State.CLOSED;
+            state = State.CLOSED;
+            currentOpenMillis = openMillis;
+        }
+        if (closed) {
+            notifyListeners();
+        }
+    }
+
+    public void onFailure() {
+        boolean opened = false;
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN) {
+                currentOpenMillis = Math.min(maxOpenMillis, currentOpenMillis * 2);
+                state = State.OPEN;
+                openUntil = System.currentTimeMillis() + currentOpenMillis;
+            } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openUntil = System.currentTimeMillis() + currentOpenMillis;
+                opened = true;
+            }
+        }
+        if (opened) {
+            notifyListeners();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Reports the state as of now rather than the transition that triggered the call, so a
+     * delivery delayed behind a newer transition cannot leave listeners with a stale state.
+     */
+    private void notifyListeners() {
+        synchronized (listeners) {
+            boolean open = getState() != State.CLOSED;
+            if (open == notifiedOpen) {
+                return;
+            }
+            notifiedOpen = open;
+            listeners.forEach(listener -> listener.accept(open));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.contentnexus.processing.service.resilience;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the wait before retry {@code n} is uniform between zero
+ * and {@code min(maxDelayMillis, baseDelayMillis * 2^(n-1))}, so callers throttled together do not
+ * come back together.
+ */
+public record RetryBackoff(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+
+    public long delayMillis(int attempt) {
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
@@ -0,0 +1,27 @@
+package com.contentnexus.processing.service.service;
+
+import java.io.File;
+
+/**
+ * An object store addressed by URIs of the form {@code <scheme>://<bucket>/<key>}. Transfer
+ * failures are thrown as runtime exceptions, so a failed transfer fails the stage that ran it.
+ */
+public interface BlobStore {
+
+    /**
+     * The URI scheme this store serves, e.g. {@code gs} or {@code s3}.
+     */
+    String scheme();
+
+    String generateUri(String bucketName, String key);
+
+    void upload(File file, String uri);
+
+    void download(String uri, File destination);
+
+    /**
+     * Copies an object to another location in the same store without routing the bytes through
+     * this service.
+     */
+    void copy(String sourceUri, String destinationUri);
+}
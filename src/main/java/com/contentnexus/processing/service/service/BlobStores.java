@@ -0,0 +1,47 @@
+package com.contentnexus.processing.service.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Looks up the {@link BlobStore} for a URI by its scheme, and the store that archives go to,
+ * chosen with {@code processing.archive.store} ({@code gs} by default, or {@code s3}).
+ */
+@Service
+public class BlobStores {
+    private final Map<String, BlobStore> storesByScheme;
+
+    @Value("${processing.archive.store:gs}")
+    private String archiveScheme;
+
+    public BlobStores(List<BlobStore> stores) {
+        this.storesByScheme = stores.stream().collect(Collectors.toMap(BlobStore::scheme, Function.identity()));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!storesByScheme.containsKey(archiveScheme)) {
+            throw new IllegalStateException("No blob store for processing.archive.store=" + archiveScheme
+                    + "; available: " + storesByScheme.keySet());
+        }
+    }
+
+    public BlobStore archiveStore() {
+        return storesByScheme.get(archiveScheme);
+    }
+
+    public BlobStore forUri(String uri) {
+        int schemeEnd = uri.indexOf("://");
+        BlobStore store = schemeEnd > 0 ? storesByScheme.get(uri.substring(0, schemeEnd)) : null;
+        if (store == null) {
+            throw new IllegalArgumentException("No blob store for URI: " + uri);
+        }
+        return store;
+    }
+}
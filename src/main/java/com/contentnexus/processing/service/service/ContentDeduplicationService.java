@@ -0,0 +1,86 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds an already processed output for a raw video with the same content fingerprint and
+ * template, so re-ingested files can reuse it instead of being transcoded again.
+ */
+@Service
+public class ContentDeduplicationService {
+    private static final Logger logger = LoggerFactory.getLogger(ContentDeduplicationService.class);
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    private final ProcessedContentRepository processedContentRepository;
+
+    @Value("${processing.dedup.enabled:true}")
+    private boolean enabled;
+
+    // Hashing runs on long-lived pipeline stage threads, so each keeps one read buffer for its lifetime
+    private final ThreadLocal<ByteBuffer> hashBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE));
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ContentDeduplicationService(ProcessedContentRepository processedContentRepository) {
+        this.processedContentRepository = processedContentRepository;
+    }
+
+    public Optional<ProcessedContent> findReusableOutput(String contentFingerprint, String templateId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<ProcessedContent> match = processedContentRepository
+                .findFirstByContentFingerprintAndTemplateIdAndStatus(contentFingerprint, templateId, "Processed");
+        if (match.isPresent()) {
+            hits.incrementAndGet();
+            logger.info("Found processed output for fingerprint {} from video ID: {}", contentFingerprint, match.get().getVideoId());
+        } else {
+            misses.incrementAndGet();
+        }
+        return match;
+    }
+
+    /**
+     * Hashes a local copy of the content, for objects that have no checksum stored in GCS.
+     */
+    public String fingerprintOf(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = hashBuffers.get().clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return "sha256:" + Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,212 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ContentProcessedEvent;
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@code content_processed} events that {@link MetadataUpdateService} records with
+ * each terminal status. Events are sent as soon as the write buffer has flushed them, and removed
+ * from their documents in batches once Kafka has acknowledged them. A slow sweep over the sparse
+ * {@code pendingEvent.occurredAt} index picks up whatever a crash left behind.
+ */
+@Service
+public class ContentEventRelay {
+    private static final Logger logger = LoggerFactory.getLogger(ContentEventRelay.class);
+    private static final int MAX_CLEAR_BATCH = 1000;
+
+    private final KafkaTemplate<String, ContentProcessedEvent> kafkaTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final ProcessedContentWriteBuffer writeBuffer;
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final Timer delayTimer;
+
+    @Value("${processing.events.topic:content_processed}")
+    private String topic;
+
+    @Value("${processing.events.clear-interval-millis:200}")
+    private long clearIntervalMillis;
+
+    @Value("${processing.events.sweep-interval-seconds:30}")
+    private long sweepIntervalSeconds;
+
+    @Value("${processing.events.sweep-limit:500}")
+    private int sweepLimit;
+
+    // Event IDs sent but not yet acknowledged, so the sweep does not send them again
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // Event IDs acknowledged by Kafka, waiting to be removed from their documents
+    private final Queue<String> published = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService executor;
+
+    public ContentEventRelay(KafkaTemplate<String, ContentProcessedEvent> kafkaTemplate,
+                             MongoTemplate mongoTemplate,
+                             ProcessedContentWriteBuffer writeBuffer,
+                             MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.writeBuffer = writeBuffer;
+        this.publishedCounter = Counter.builder("processing.events.published")
+                .tag("result", "success")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("processing.events.published")
+                .tag("result", "failure")
+                .register(meterRegistry);
+        this.delayTimer = Timer.builder("processing.events.delay")
+                .description("Time from terminal status to the event's acknowledgement by Kafka")
+                .register(meterRegistry);
+        Gauge.builder("processing.events.in-flight", inFlight, Set::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "content-event-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writeBuffer.addFlushListener(this::onFlushed);
+        executor.scheduleWithFixedDelay(this::clearPublishedQuietly, clearIntervalMillis, clearIntervalMillis, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::sweepQuietly, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        kafkaTemplate.flush();
+        clearPublishedQuietly();
+    }
+
+    /**
+     * Receives the events exactly as the flush wrote them, so an event recorded after its batch
+     * was drained waits for the flush that makes it durable.
+     */
+    private void onFlushed(List<ProcessedContentWriteBuffer.FlushedContent> flushed) {
+        if (executor.isShutdown()) {
+            return; // left in the outbox for the next sweep
+        }
+        List<ContentProcessedEvent> events = new ArrayList<>();
+        for (ProcessedContentWriteBuffer.FlushedContent content : flushed) {
+            ContentProcessedEvent event = content.pendingEvent();
+            if (event != null && inFlight.add(event.getEventId())) {
+                events.add(event);
+            }
+        }
+        if (!events.isEmpty()) {
+            // Sending can block on producer metadata, which must not hold up the flusher
+            executor.execute(() -> events.forEach(this::send));
+        }
+    }
+
+    private void send(ContentProcessedEvent event) {
+        try {
+            kafkaTemplate.send(topic, event.getVideoId(), event).whenComplete((result, e) -> {
+                inFlight.remove(event.getEventId());
+                if (e == null) {
+                    published.add(event.getEventId());
+                    publishedCounter.increment();
+                    delayTimer.record(Duration.between(event.getOccurredAt(), Instant.now()));
+                } else {
+                    failedCounter.increment();
+                    logger.warn("Failed to publish {} event for video {}; the sweep will retry it",
+                            event.getStatus(), event.getVideoId(), e);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(event.getEventId());
+            failedCounter.increment();
+            logger.warn("Failed to publish {} event for video {}; the sweep will retry it",
+                    event.getStatus(), event.getVideoId(), e);
+        }
+    }
+
+    /**
+     * Removes acknowledged events from their documents. The match is on the event ID, so an event
+     * recorded since by a later terminal status stays in place.
+     */
+    private void clearPublished() {
+        while (!published.isEmpty()) {
+            List<String> eventIds = new ArrayList<>();
+            String eventId;
+            while (eventIds.size() < MAX_CLEAR_BATCH && (eventId = published.poll()) != null) {
+                eventIds.add(eventId);
+            }
+            try {
+                mongoTemplate.updateMulti(Query.query(Criteria.where("pendingEvent.eventId").in(eventIds)),
+                        new Update().unset("pendingEvent"), ProcessedContent.class);
+            } catch (RuntimeException e) {
+                published.addAll(eventIds);
+                throw e;
+            }
+        }
+    }
+
+    private void clearPublishedQuietly() {
+        try {
+            clearPublished();
+        } catch (Exception e) {
+            logger.error("Failed to clear published events; retrying on the next tick", e);
+        }
+    }
+
+    /**
+     * Sends events whose documents still hold them a full sweep interval later, e.g. because the
+     * pod stopped between the status write and the Kafka acknowledgement.
+     */
+    private void sweep() {
+        Instant cutoff = Instant.now().minusSeconds(sweepIntervalSeconds);
+        Query query = Query.query(Criteria.where("pendingEvent.occurredAt").lt(cutoff))
+                .with(Sort.by("pendingEvent.occurredAt"))
+                .limit(sweepLimit);
+        query.fields().include("videoId", "pendingEvent");
+        List<ProcessedContent> stale = mongoTemplate.find(query, ProcessedContent.class);
+        int resent = 0;
+        for (ProcessedContent content : stale) {
+            ContentProcessedEvent event = content.getPendingEvent();
+            if (inFlight.add(event.getEventId())) {
+                send(event);
+                resent++;
+            }
+        }
+        if (resent > 0) {
+            logger.info("Resent {} unpublished content_processed events", resent);
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            logger.error("Event sweep failed; retrying in {} s", sweepIntervalSeconds, e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Serves processing status for the query API from a bounded in-memory cache in front of an
+ * indexed, secondary-preferred Mongo read. Entries written by this pod are evicted as soon as the
+ * write buffer flushes them; the TTL bounds staleness for writes made by other pods.
+ */
+@Service
+public class ContentStatusService {
+
+    /** A status projection and the ETag of its JSON form. */
+    public record ContentStatus(ProcessedContent content, String etag) {
+    }
+
+    private final ProcessedContentRepository processedContentRepository;
+    private final ProcessedContentWriteBuffer writeBuffer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${processing.status.cache.max-entries:100000}")
+    private long maxEntries;
+
+    @Value("${processing.status.cache.ttl-seconds:5}")
+    private long ttlSeconds;
+
+    private Cache<String, ContentStatus> cache;
+
+    public ContentStatusService(ProcessedContentRepository processedContentRepository,
+                                ProcessedContentWriteBuffer writeBuffer,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.processedContentRepository = processedContentRepository;
+        this.writeBuffer = writeBuffer;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "processing.status");
+        writeBuffer.addFlushListener(flushed -> cache.invalidateAll(
+                flushed.stream().map(ProcessedContentWriteBuffer.FlushedContent::videoId).toList()));
+    }
+
+    public Optional<ContentStatus> getStatus(String videoId) {
+        return Optional.ofNullable(cache.get(videoId, id -> processedContentRepository.findStatusByVideoId(id)
+                .map(this::toStatus)
+                .orElse(null)));  // unknown videos are not cached, so they show up as soon as they are ingested
+    }
+
+    /**
+     * Looks up several videos with one query for all cache misses. Unknown videos are left out of
+     * the result, which keeps the order of the request.
+     */
+    public Map<String, ContentStatus> getStatuses(Collection<String> videoIds) {
+        Map<String, ContentStatus> found = cache.getAll(videoIds, missing ->
+                processedContentRepository.findStatusByVideoIdIn(List.copyOf(missing)).stream()
+                        .map(this::toStatus)
+                        .collect(Collectors.toMap(status -> status.content().getVideoId(), Function.identity())));
+        Map<String, ContentStatus> ordered = new LinkedHashMap<>();
+        for (String videoId : videoIds) {
+            ContentStatus status = found.get(videoId);
+            if (status != null) {
+                ordered.put(videoId, status);
+            }
+        }
+        return ordered;
+    }
+
+    private ContentStatus toStatus(ProcessedContent content) {
+        try {
+            CRC32C checksum = new CRC32C();
+            checksum.update(objectMapper.writeValueAsBytes(content));
+            return new ContentStatus(content, "\"" + Long.toHexString(checksum.getValue()) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize status of video " + content.getVideoId(), e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-queues dead-lettered videos onto the ingest topics they came from, at a fixed rate so a
+ * large replay does not swamp the pipeline or the backends. Progress is committed under its own
+ * consumer group, so each replay picks up after the last one and a video is replayed once.
+ * Replayed videos start over with no retries used.
+ */
+@Service
+public class DeadLetterReplayService {
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterReplayService.class);
+
+    /** Progress of the current or last replay. */
+    public record ReplayStatus(String state, long requested, double ratePerSecond, long replayed,
+                               Instant startedAt, Instant finishedAt, String error) {
+    }
+
+    private final ConsumerFactory<String, ProcessedContent> consumerFactory;
+    private final ProcessingRetryService retryService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${processing.retry.replay.group-id:content-processing-dlt-replay}")
+    private String groupId;
+
+    @Value("${processing.retry.replay.max-rate:50}")
+    private double maxRatePerSecond;
+
+    @Value("${processing.retry.replay.max-records:10000}")
+    private long maxRecordsPerReplay;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dead-letter-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong replayed = new AtomicLong();
+    private volatile ReplayStatus status = new ReplayStatus("idle", 0, 0, 0, null, null, null);
+    private volatile boolean stopRequested;
+
+    public DeadLetterReplayService(ConsumerFactory<String, ProcessedContent> consumerFactory,
+                                   ProcessingRetryService retryService,
+                                   MeterRegistry meterRegistry) {
+        this.consumerFactory = consumerFactory;
+        this.retryService = retryService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        executor.shutdown();
+    }
+
+    /**
+     * Starts replaying up to {@code maxRecords} dead-lettered videos in the background, unless a
+     * replay is already running. A larger backlog is replayed in several runs.
+     */
+    public synchronized ReplayStatus start(long maxRecords, double ratePerSecond) {
+        if (maxRecords <= 0 || maxRecords > maxRecordsPerReplay || ratePerSecond <= 0 || ratePerSecond > maxRatePerSecond) {
+            throw new IllegalArgumentException("maxRecords must be in (0, " + maxRecordsPerReplay
+                    + "] and ratePerSecond in (0, " + maxRatePerSecond + "]");
+        }
+        if ("running".equals(status.state())) {
+            throw new IllegalStateException("A replay is already running");
+        }
+        stopRequested = false;
+        replayed.set(0);
+        status = new ReplayStatus("running", maxRecords, ratePerSecond, 0, Instant.now(), null, null);
+        executor.execute(() -> replay(maxRecords, ratePerSecond));
+        return status;
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public ReplayStatus getStatus() {
+        ReplayStatus current = status;
+        return "running".equals(current.state())
+                ? new ReplayStatus(current.state(), current.requested(), current.ratePerSecond(), replayed.get(),
+                        current.startedAt(), null, null)
+                : current;
+    }
+
+    private void replay(long maxRecords, double ratePerSecond) {
+        String error = null;
+        try {
+            replayFromTopic(maxRecords, ratePerSecond);
+        } catch (Exception e) {
+            logger.error("Dead-letter replay failed after {} videos", replayed.get(), e);
+            error = e.getMessage();
+        }
+        ReplayStatus started = status;
+        status = new ReplayStatus(error != null ? "failed" : stopRequested ? "stopped" : "finished", started.requested(),
+                started.ratePerSecond(), replayed.get(), started.startedAt(), Instant.now(), error);
+        logger.info("Dead-letter replay {}: {} videos re-queued", status.state(), replayed.get());
+    }
+
+    private void replayFromTopic(long maxRecords, double ratePerSecond) {
+        RateLimiter rateLimiter = RateLimiter.create(ratePerSecond);
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, ProcessedContent> consumer = consumerFactory.createConsumer(groupId, null, null, overrides)) {
+            // Assigned rather than subscribed, so a slow replay never takes part in a rebalance
+            List<TopicPartition> partitions = consumer.partitionsFor(retryService.getDeadLetterTopic()).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            // Videos dead-lettered while the replay runs are left for the next one
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (!stopRequested && replayed.get() < maxRecords && !reachedEnd(consumer, endOffsets)) {
+                ConsumerRecords<String, ProcessedContent> records = consumer.poll(Duration.ofSeconds(1));
+                Map<TopicPartition, OffsetAndMetadata> done = new HashMap<>();
+                try {
+                    for (TopicPartition partition : records.partitions()) {
+                        long next = -1;
+                        for (ConsumerRecord<String, ProcessedContent> record : records.records(partition)) {
+                            next = record.offset();
+                            if (stopRequested || replayed.get() >= maxRecords || next >= endOffsets.get(partition)) {
+                                break;
+                            }
+                            rateLimiter.acquire();
+                            if (record.value() != null) {
+                                record.value().setRetryCount(null);
+                                record.value().setFailedStage(null);
+                                retryService.requeue(record);
+                                meterRegistry.counter("processing.dead-letters.replayed").increment();
+                            }
+                            replayed.incrementAndGet();
+                            next++;
+                            done.put(partition, new OffsetAndMetadata(next));
+                        }
+                        // Records polled past the stopping point are read again by the next replay
+                        consumer.seek(partition, next);
+                    }
+                } finally {
+                    if (!done.isEmpty()) {
+                        consumer.commitSync(done);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean reachedEnd(Consumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+        return endOffsets.entrySet().stream().allMatch(end -> consumer.position(end.getKey()) >= end.getValue());
+    }
+}
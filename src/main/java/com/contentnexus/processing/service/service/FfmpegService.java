@@ -0,0 +1,111 @@
+package com.contentnexus.processing.service.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the FFmpeg tools for the short jobs around transcoding: probing inputs and joining
+ * already-encoded parts. Transcoding itself is done by {@link FfmpegTranscodingEngine}.
+ */
+@Service
+public class FfmpegService {
+    private static final Logger logger = LoggerFactory.getLogger(FfmpegService.class);
+
+    @Value("${processing.transcoding.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${processing.transcoding.ffprobe-path:ffprobe}")
+    private String ffprobePath;
+
+    @Value("${processing.transcoding.probe-timeout-seconds:30}")
+    private long probeTimeoutSeconds;
+
+    @Value("${processing.transcoding.concat-timeout-seconds:1800}")
+    private long concatTimeoutSeconds;
+
+    public String getFfmpegPath() {
+        return ffmpegPath;
+    }
+
+    /**
+     * Returns the media duration in seconds, or a negative value if FFprobe cannot tell. The input
+     * is a local file or an HTTP(S) URL, from which FFprobe only reads the container headers.
+     */
+    public double probeDurationSeconds(String input) throws IOException, InterruptedException {
+        // Output goes to a file rather than a pipe, so reading it never outlasts the timeout
+        Path outputFile = Files.createTempFile("ffprobe", ".out");
+        Process process = new ProcessBuilder(ffprobePath, "-v", "error", "-show_entries", "format=duration",
+                "-of", "default=noprint_wrappers=1:nokey=1", input)
+                .redirectErrorStream(true)
+                .redirectOutput(outputFile.toFile())
+                .start();
+        try {
+            // Signed URLs carry credentials; keep the query string out of the logs
+            String source = input.split("\\?", 2)[0];
+            if (!process.waitFor(probeTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IOException("FFprobe timed out after " + probeTimeoutSeconds + " seconds for " + source);
+            }
+            String output = Files.readString(outputFile, StandardCharsets.UTF_8).trim();
+            if (process.exitValue() != 0) {
+                throw new IOException("FFprobe failed for " + source + ": " + output);
+            }
+            try {
+                return Double.parseDouble(output);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    public double probeDurationSeconds(Path file) throws IOException, InterruptedException {
+        return probeDurationSeconds(file.toString());
+    }
+
+    /**
+     * Joins parts that share their encoding settings into one file without re-encoding them, in
+     * the given order.
+     */
+    public void concat(List<Path> parts, Path output) throws IOException, InterruptedException {
+        Path list = output.resolveSibling(output.getFileName() + ".parts.txt");
+        Files.writeString(list, parts.stream()
+                .map(part -> "file '" + part.toAbsolutePath().toString().replace("'", "'\\''") + "'")
+                .collect(Collectors.joining("\n", "", "\n")));
+        Path logFile = output.resolveSibling(output.getFileName() + ".log");
+
+        Process process = new ProcessBuilder(ffmpegPath, "-hide_banner", "-nostdin", "-y", "-f", "concat", "-safe", "0",
+                "-i", list.toString(), "-map", "0", "-c", "copy", "-movflags", "+faststart", output.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        try {
+            if (!process.waitFor(concatTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IOException("FFmpeg concat timed out after " + concatTimeoutSeconds + " seconds");
+            }
+            if (process.exitValue() != 0) {
+                logger.error("FFmpeg concat into {} exited with {}:\n{}", output, process.exitValue(), Files.readString(logFile));
+                throw new IOException("FFmpeg concat exited with " + process.exitValue());
+            }
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+            Files.deleteIfExists(list);
+            Files.deleteIfExists(logFile);
+        }
+    }
+}
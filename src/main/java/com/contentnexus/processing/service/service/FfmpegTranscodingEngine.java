@@ -0,0 +1,372 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import com.google.cloud.video.transcoder.v1.ElementaryStream;
+import com.google.cloud.video.transcoder.v1.Job;
+import com.google.cloud.video.transcoder.v1.JobConfig;
+import com.google.cloud.video.transcoder.v1.MuxStream;
+import com.google.cloud.video.transcoder.v1.VideoStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transcodes on this pod's own CPUs with a pool of FFmpeg processes, one per pool thread, sized
+ * to the available cores. FFmpeg reads the raw video from its scratch copy and writes every
+ * rendition in a single decoding pass into the workspace, from where each file is uploaded
+ * straight to the output location. Progress is read from FFmpeg's {@code -progress} stream.
+ * <p>
+ * Only inline configs of progressive MP4 outputs with H.264 video and AAC audio are supported,
+ * such as the built-in {@code progressive-mp4} template. Templates with segments or manifests stay
+ * on the Transcoder API, and so do presets such as {@code preset/web-hd}, whose HLS and DASH
+ * outputs would be missing from a local render.
+ */
+@Service
+@ConditionalOnProperty(name = "processing.transcoding.local.enabled", havingValue = "true")
+public class FfmpegTranscodingEngine implements TranscodingEngine {
+    public static final String NAME = "ffmpeg";
+    private static final Logger logger = LoggerFactory.getLogger(FfmpegTranscodingEngine.class);
+
+    private final ScratchSpaceManager scratchSpaceManager;
+    private final TranscodeTemplateResolver templateResolver;
+    private final BlobStores blobStores;
+    private final FfmpegService ffmpegService;
+    private final MeterRegistry meterRegistry;
+
+    // 0 runs one process per threads-per-process cores
+    @Value("${processing.transcoding.local.max-processes:0}")
+    private int maxProcesses;
+
+    @Value("${processing.transcoding.local.threads-per-process:2}")
+    private int threadsPerProcess;
+
+    // 0 allows twice as many jobs as processes to wait for a free process
+    @Value("${processing.transcoding.local.max-pending:0}")
+    private int maxPending;
+
+    @Value("${processing.transcoding.local.x264-preset:veryfast}")
+    private String x264Preset;
+
+    @Value("${processing.transcoding.local.timeout-seconds:1800}")
+    private long timeoutSeconds;
+
+    private final Map<String, CompletableFuture<Output>> jobs = new ConcurrentHashMap<>();
+    private final Set<Process> runningProcesses = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+    private ExecutorService processPool;
+
+    public FfmpegTranscodingEngine(ScratchSpaceManager scratchSpaceManager, TranscodeTemplateResolver templateResolver,
+                                   BlobStores blobStores, FfmpegService ffmpegService, MeterRegistry meterRegistry) {
+        this.scratchSpaceManager = scratchSpaceManager;
+        this.templateResolver = templateResolver;
+        this.blobStores = blobStores;
+        this.ffmpegService = ffmpegService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (maxProcesses <= 0) {
+            maxProcesses = Math.max(1, cores / Math.max(1, threadsPerProcess));
+        }
+        if (maxPending <= 0) {
+            maxPending = 2 * maxProcesses;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        processPool = Executors.newFixedThreadPool(maxProcesses, runnable -> {
+            Thread thread = new Thread(runnable, "ffmpeg-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("transcoding.local.processes", runningProcesses, Set::size);
+        meterRegistry.gauge("transcoding.local.pending", pendingJobs);
+        logger.info("Local FFmpeg engine with {} processes of {} threads on {} cores", maxProcesses, threadsPerProcess, cores);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        processPool.shutdownNow();
+        runningProcesses.forEach(Process::destroyForcibly);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(TranscodeTemplateResolver.ResolvedTemplate template) {
+        JobConfig config = localConfigOf(template);
+        if (config == null || config.getManifestsCount() > 0) {
+            return false;
+        }
+        Map<String, ElementaryStream> streams = elementaryStreamsOf(config);
+        return config.getMuxStreamsList().stream().allMatch(muxStream -> muxStream.getContainer().equals("mp4")
+                && !muxStream.hasSegmentSettings()
+                && muxStream.getElementaryStreamsList().stream().allMatch(key -> isSupported(streams.get(key))));
+    }
+
+    /**
+     * Whether a job submitted now would start soon; when the pool is backed up, the Transcoder
+     * API finishes sooner.
+     */
+    public boolean hasCapacity() {
+        return pendingJobs.get() < maxPending;
+    }
+
+    @Override
+    public String submit(VideoContext context) {
+        String jobName = NAME + "/" + context.getVideoId() + "/" + UUID.randomUUID();
+        start(context, jobName);
+        logger.info("Local transcoding queued for video ID: {}", context.getVideoId());
+        return jobName;
+    }
+
+    /**
+     * A job that is not running here was started before a restart; it is run again under the
+     * same name, since its outputs only exist once it completes.
+     */
+    @Override
+    public CompletableFuture<Output> await(VideoContext context, String jobName) {
+        CompletableFuture<Output> job = jobs.get(jobName);
+        if (job == null) {
+            logger.info("Local job {} is not running on this pod, running it again", jobName);
+            job = start(context, jobName);
+        }
+        return job.whenComplete((output, e) -> jobs.remove(jobName));
+    }
+
+    private CompletableFuture<Output> start(VideoContext context, String jobName) {
+        return jobs.computeIfAbsent(jobName, name -> {
+            pendingJobs.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                pendingJobs.decrementAndGet();
+                return transcode(context, name);
+            }, processPool);
+        });
+    }
+
+    private Output transcode(VideoContext context, String jobName) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            TranscodeTemplateResolver.ResolvedTemplate template = templateResolver.resolve(context.getContent().getTemplateId());
+            JobConfig config = localConfigOf(template);
+            if (config == null) {
+                throw new TranscodingFailedException("Template " + template.templateId() + " cannot be transcoded locally");
+            }
+
+            ScratchSpaceManager.Workspace workspace = scratchSpaceManager.workspaceFor(context);
+            Path input = workspace.fetch(context.getGcsInputUri());
+            double durationSeconds = ffmpegService.probeDurationSeconds(input);
+
+            Map<String, Path> outputFiles = new LinkedHashMap<>();
+            for (MuxStream muxStream : config.getMuxStreamsList()) {
+                String fileName = fileNameOf(muxStream);
+                Path file = workspace.reserve("out/" + fileName, expectedBytes(config, muxStream, durationSeconds));
+                Files.createDirectories(file.getParent());
+                outputFiles.put(fileName, file);
+            }
+
+            runFfmpeg(context.getVideoId(), jobName, ffmpegCommand(input, config, outputFiles), durationSeconds,
+                    workspace.getDirectory().resolve("ffmpeg.log"));
+
+            // Straight from the scratch files to the output location, where the Transcoder would have written them
+            for (Map.Entry<String, Path> output : outputFiles.entrySet()) {
+                String outputUri = context.getGcsOutputUri() + output.getKey();
+                blobStores.forUri(outputUri).upload(output.getValue().toFile(), outputUri);
+            }
+
+            Job job = Job.newBuilder().setName(jobName).setConfig(config).setOutputUri(context.getGcsOutputUri()).build();
+            outcome = "success";
+            logger.info("Local transcoding completed for video ID: {}", context.getVideoId());
+            return new Output(templateResolver.renditionsOf(job), List.of());
+        } catch (IOException e) {
+            throw new TranscodingFailedException("Local transcoding failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranscodingFailedException("Local transcoding interrupted", e);
+        } finally {
+            sample.stop(meterRegistry.timer("transcoding.local.duration", "outcome", outcome));
+        }
+    }
+
+    private void runFfmpeg(String videoId, String jobName, List<String> command, double durationSeconds, Path logFile)
+            throws IOException, InterruptedException {
+        logger.debug("Running {}", command);
+        Process process = new ProcessBuilder(command).redirectError(logFile.toFile()).start();
+        runningProcesses.add(process);
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CompletableFuture.delayedExecutor(timeoutSeconds, TimeUnit.SECONDS).execute(() -> {
+            if (process.isAlive()) {
+                timedOut.set(true);
+                process.destroyForcibly();
+            }
+        });
+
+        try {
+            streamProgress(process, videoId, durationSeconds);
+            int exitCode = process.waitFor();
+            if (timedOut.get()) {
+                throw new TranscodingFailedException("Local transcoding timed out after " + timeoutSeconds + " seconds");
+            }
+            if (exitCode != 0) {
+                logger.error("FFmpeg job {} exited with {}:\n{}", jobName, exitCode, tail(logFile));
+                throw new TranscodingFailedException("Transcoding failed. FFmpeg exited with " + exitCode);
+            }
+        } finally {
+            runningProcesses.remove(process);
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Reads the key=value blocks FFmpeg writes to stdout about twice a second and logs each
+     * quarter of the way.
+     */
+    private void streamProgress(Process process, String videoId, double durationSeconds) throws IOException {
+        int reportedQuarter = 0;
+        try (BufferedReader progress = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = progress.readLine()) != null) {
+                if (!line.startsWith("out_time_us=") || durationSeconds <= 0) {
+                    continue;
+                }
+                long outTimeMicros;
+                try {
+                    outTimeMicros = Long.parseLong(line.substring("out_time_us=".length()));
+                } catch (NumberFormatException e) {
+                    continue;  // "N/A" before the first frame
+                }
+                double fraction = Math.min(1.0, outTimeMicros / 1e6 / durationSeconds);
+                logger.debug("Local transcoding of video ID {} at {}%", videoId, Math.round(fraction * 100));
+                if ((int) (fraction * 4) > reportedQuarter) {
+                    reportedQuarter = (int) (fraction * 4);
+                    logger.info("Local transcoding of video ID {} is {}% done", videoId, reportedQuarter * 25);
+                }
+            }
+        }
+    }
+
+    private List<String> ffmpegCommand(Path input, JobConfig config, Map<String, Path> outputFiles) {
+        Map<String, ElementaryStream> streams = elementaryStreamsOf(config);
+        List<String> command = new ArrayList<>(List.of(ffmpegService.getFfmpegPath(), "-hide_banner", "-nostdin", "-y",
+                "-nostats", "-progress", "pipe:1", "-i", input.toString()));
+
+        for (MuxStream muxStream : config.getMuxStreamsList()) {
+            for (String key : muxStream.getElementaryStreamsList()) {
+                ElementaryStream stream = streams.get(key);
+                if (stream.hasVideoStream()) {
+                    VideoStream.H264CodecSettings h264 = stream.getVideoStream().getH264();
+                    command.addAll(List.of("-map", "0:v:0", "-c:v", "libx264", "-preset", x264Preset, "-pix_fmt", "yuv420p",
+                            "-b:v", String.valueOf(h264.getBitrateBps()),
+                            "-maxrate", String.valueOf(h264.getBitrateBps()),
+                            "-bufsize", String.valueOf(2L * h264.getBitrateBps()),
+                            "-vf", "scale=" + dimension(h264.getWidthPixels()) + ":" + dimension(h264.getHeightPixels())));
+                    if (h264.getFrameRate() > 0) {
+                        command.addAll(List.of("-r", String.valueOf(h264.getFrameRate())));
+                    }
+                    if (h264.hasGopDuration()) {
+                        command.addAll(List.of("-force_key_frames", "expr:gte(t,n_forced*" + h264.getGopDuration().getSeconds() + ")"));
+                    }
+                } else {
+                    // The trailing ? keeps silent inputs working
+                    command.addAll(List.of("-map", "0:a:0?", "-c:a", "aac",
+                            "-b:a", String.valueOf(stream.getAudioStream().getBitrateBps())));
+                }
+            }
+            command.addAll(List.of("-threads", String.valueOf(threadsPerProcess), "-movflags", "+faststart",
+                    outputFiles.get(fileNameOf(muxStream)).toString()));
+        }
+        return command;
+    }
+
+    private static JobConfig localConfigOf(TranscodeTemplateResolver.ResolvedTemplate template) {
+        return template.config();
+    }
+
+    private static boolean isSupported(ElementaryStream stream) {
+        if (stream == null) {
+            return false;
+        }
+        if (stream.hasVideoStream()) {
+            return stream.getVideoStream().hasH264();
+        }
+        return stream.hasAudioStream()
+                && (stream.getAudioStream().getCodec().isEmpty() || stream.getAudioStream().getCodec().equals("aac"));
+    }
+
+    private static Map<String, ElementaryStream> elementaryStreamsOf(JobConfig config) {
+        return config.getElementaryStreamsList().stream()
+                .collect(Collectors.toMap(ElementaryStream::getKey, Function.identity(), (first, second) -> first));
+    }
+
+    private static String fileNameOf(MuxStream muxStream) {
+        return muxStream.getFileName().isEmpty() ? muxStream.getKey() + ".mp4" : muxStream.getFileName();
+    }
+
+    // The Transcoder treats 0 as "keep the aspect ratio"; -2 does the same with an even size for H.264
+    private static int dimension(int pixels) {
+        return pixels > 0 ? pixels : -2;
+    }
+
+    /**
+     * Quota reserved for an output: its bitrates over the duration with 25% headroom, or 256 MiB
+     * when the duration is unknown.
+     */
+    private static long expectedBytes(JobConfig config, MuxStream muxStream, double durationSeconds) {
+        if (durationSeconds <= 0) {
+            return 256L * 1024 * 1024;
+        }
+        Map<String, ElementaryStream> streams = elementaryStreamsOf(config);
+        long bitsPerSecond = muxStream.getElementaryStreamsList().stream()
+                .map(streams::get)
+                .mapToLong(stream -> stream.hasVideoStream()
+                        ? stream.getVideoStream().getH264().getBitrateBps()
+                        : stream.getAudioStream().getBitrateBps())
+                .sum();
+        return (long) (bitsPerSecond / 8.0 * durationSeconds * 1.25) + 1024 * 1024;
+    }
+
+    private static String tail(Path logFile) {
+        try {
+            List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+            return String.join("\n", lines.subList(Math.max(0, lines.size() - 20), lines.size()));
+        } catch (IOException e) {
+            return "(no FFmpeg log)";
+        }
+    }
+}
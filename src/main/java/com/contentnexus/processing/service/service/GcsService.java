@@ -1,93 +1,351 @@
 package com.contentnexus.processing.service.service;
 
-import com.google.auth.oauth2.GoogleCredentials;
+import com.contentnexus.processing.service.resilience.BackendGuard;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32C;
 
 @Service
-public class GcsService {
+public class GcsService implements BlobStore {
     private static final Logger LOGGER = Logger.getLogger(GcsService.class.getName());
+    // Resumable upload chunks must be a multiple of 256 KiB
+    private static final int UPLOAD_CHUNK_GRANULARITY = 256 * 1024;
+    private static final int DOWNLOAD_BUFFER_SIZE = 2 * 1024 * 1024;
+    private static final long CRC_MAPPING_SIZE = 256L * 1024 * 1024;
 
-    private Storage storage;
+    private final Storage storage;
+    private final MeterRegistry meterRegistry;
+    // Every request goes through the GCS guard: adaptive concurrency, retries with backoff, circuit breaker
+    private final BackendGuard guard;
 
-    @Value("${google.cloud.credentials.file}")
-    private String credentialsPath;
+    @Value("${google.gcs.archive.megabytes-per-chunk:1024}")
+    private long archiveMegabytesPerChunk;
+
+    @Value("${google.gcs.upload.chunk-size:16777216}")
+    private int uploadChunkSize;
+
+    @Value("${google.gcs.upload.buffer-pool-size:4}")
+    private int uploadBufferPoolSize;
+
+    @Value("${google.gcs.upload.max-resume-attempts:3}")
+    private int uploadMaxResumeAttempts;
+
+    @Value("${google.gcs.download.parallel-threshold:67108864}")
+    private long downloadParallelThreshold;
+
+    @Value("${google.gcs.download.range-size:33554432}")
+    private long downloadRangeSize;
+
+    @Value("${google.gcs.download.parallelism:8}")
+    private int downloadParallelism;
+
+    @Value("${google.gcs.download.max-range-attempts:3}")
+    private int downloadMaxRangeAttempts;
+
+    private ExecutorService downloadExecutor;
+    // Download workers are long-lived pool threads, so each keeps one read buffer for its lifetime
+    private final ThreadLocal<ByteBuffer> downloadBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DOWNLOAD_BUFFER_SIZE));
+
+    // Direct buffers are allocated lazily up to the pool size and reused across uploads
+    private final BlockingQueue<ByteBuffer> uploadBuffers = new LinkedBlockingQueue<>();
+    private final AtomicInteger allocatedUploadBuffers = new AtomicInteger();
+
+    public GcsService(Storage storage, MeterRegistry meterRegistry, BackendGuards backendGuards) {
+        this.storage = storage;
+        this.meterRegistry = meterRegistry;
+        this.guard = backendGuards.gcs();
+    }
 
     @PostConstruct
     public void init() {
-        if (credentialsPath == null || credentialsPath.isEmpty()) {
-            throw new IllegalArgumentException("Credentials path is not configured properly.");
-        }
+        uploadChunkSize = Math.max(UPLOAD_CHUNK_GRANULARITY,
+                (uploadChunkSize + UPLOAD_CHUNK_GRANULARITY - 1) / UPLOAD_CHUNK_GRANULARITY * UPLOAD_CHUNK_GRANULARITY);
+        downloadExecutor = Executors.newFixedThreadPool(downloadParallelism);
+        LOGGER.info("GCS Service initialized successfully.");
+    }
 
-        File credentialsFile = new File(credentialsPath.replace("\\", "/"));
-        if (!credentialsFile.exists()) {
-            throw new IllegalArgumentException("Credentials file not found at: " + credentialsPath);
-        }
+    @PreDestroy
+    public void shutdown() {
+        downloadExecutor.shutdownNow();
+    }
 
-        try (FileInputStream credentialsStream = new FileInputStream(credentialsFile)) {
-            GoogleCredentials credentials = GoogleCredentials.fromStream(credentialsStream);
-            this.storage = StorageOptions.newBuilder().setCredentials(credentials).build().getService();
-            LOGGER.info("GCS Service initialized successfully.");
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to initialize GCS Service.", e);
-            throw new RuntimeException("Failed to initialize GCS Service", e);
-        }
+    @Override
+    public String scheme() {
+        return "gs";
+    }
+
+    @Override
+    public String generateUri(String bucketName, String key) {
+        return generateGcsUri(bucketName, key);
+    }
+
+    @Override
+    public void upload(File file, String uri) {
+        uploadToGcs(file, uri);
+    }
+
+    @Override
+    public void download(String uri, File destination) {
+        downloadFromGcs(uri, destination);
+    }
+
+    @Override
+    public void copy(String sourceUri, String destinationUri) {
+        copyWithinGcs(sourceUri, destinationUri);
     }
 
+    /**
+     * Streams a file into GCS through a resumable upload session. The file is read chunk by chunk
+     * into a pooled direct buffer, so heap usage does not grow with the file size. After a
+     * retryable failure the session is restored from the last committed chunk and the file is
+     * re-read from that offset.
+     */
     public void uploadToGcs(File file, String gcsUri) {
-        String[] uriParts = gcsUri.replace("gs://", "").split("/", 2);
-        if (uriParts.length != 2) {
-            throw new IllegalArgumentException("Invalid GCS URI format: " + gcsUri);
-        }
-        String bucketName = uriParts[0];
-        String objectName = uriParts[1];
+        guard.run("upload", () -> uploadOnce(file, gcsUri));
+    }
 
-        BlobId blobId = BlobId.of(bucketName, objectName);
+    private void uploadOnce(File file, String gcsUri) {
+        BlobId blobId = toBlobId(gcsUri);
         BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
 
+        ByteBuffer buffer;
         try {
-            byte[] fileBytes = Files.readAllBytes(file.toPath());
-            storage.create(blobInfo, fileBytes);
-            LOGGER.info("Uploaded file to GCS: " + gcsUri);
+            buffer = borrowUploadBuffer();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an upload buffer: " + gcsUri, e);
+        }
+
+        long startedAt = System.nanoTime();
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long uploadedBytes = streamToGcs(fileChannel, blobInfo, buffer);
+            recordTransfer("upload", uploadedBytes, startedAt);
+            LOGGER.info("Uploaded " + uploadedBytes + " bytes to GCS: " + gcsUri);
         } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to read file: " + file.getPath(), e);
-            throw new RuntimeException("Failed to read file: " + file.getPath(), e);
+            recordTransferFailure("upload");
+            LOGGER.log(Level.SEVERE, "Failed to upload file to GCS: " + file.getPath() + " -> " + gcsUri, e);
+            throw new RuntimeException("Failed to upload file to GCS: " + file.getPath() + " -> " + gcsUri, e);
         } catch (StorageException e) {
+            recordTransferFailure("upload");
             LOGGER.log(Level.SEVERE, "Failed to upload file to GCS: " + gcsUri, e);
             throw new RuntimeException("Failed to upload file to GCS: " + gcsUri, e);
+        } finally {
+            buffer.clear();
+            uploadBuffers.offer(buffer);
+        }
+    }
+
+    private long streamToGcs(FileChannel source, BlobInfo blobInfo, ByteBuffer buffer) throws IOException {
+        WriteChannel writer = storage.writer(blobInfo);
+        writer.setChunkSize(uploadChunkSize);
+        RestorableState<WriteChannel> committedState = writer.capture();
+        long committedPosition = 0;
+        int resumeAttempts = 0;
+
+        while (true) {
+            try {
+                buffer.clear();
+                if (source.read(buffer) < 0) {
+                    writer.close();
+                    return source.position();
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    writer.write(buffer);
+                }
+                committedState = writer.capture();
+                committedPosition = source.position();
+                resumeAttempts = 0;
+            } catch (IOException | StorageException e) {
+                if (!isRetryable(e) || ++resumeAttempts > uploadMaxResumeAttempts) {
+                    // Not closed: closing finalizes the object with what was written so far. The
+                    // unfinished session leaves nothing at the target and expires on its own.
+                    throw e;
+                }
+                LOGGER.log(Level.WARNING, "Upload to " + blobInfo.getBlobId().toGsUtilUri() + " failed, resuming from offset "
+                        + committedPosition + " (attempt " + resumeAttempts + ")", e);
+                writer = committedState.restore();
+                source.position(committedPosition);
+            }
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof StorageException storageException) {
+            return storageException.isRetryable();
+        }
+        return e.getCause() instanceof StorageException storageException && storageException.isRetryable();
+    }
+
+    private ByteBuffer borrowUploadBuffer() throws InterruptedException {
+        ByteBuffer buffer = uploadBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedUploadBuffers.getAndUpdate(count -> count < uploadBufferPoolSize ? count + 1 : count) < uploadBufferPoolSize) {
+            return ByteBuffer.allocateDirect(uploadChunkSize);
+        }
+        return uploadBuffers.take();
+    }
+
+    /**
+     * Copies an object to another location without routing the bytes through this service.
+     * GCS performs the copy server-side as a rewrite; large or cross-location objects take
+     * several rewrite calls, each continuing from the rewrite token of the previous one.
+     */
+    public void copyWithinGcs(String sourceUri, String destinationUri) {
+        guard.run("copy", () -> copyOnce(sourceUri, destinationUri));
+    }
+
+    private void copyOnce(String sourceUri, String destinationUri) {
+        Storage.CopyRequest copyRequest = Storage.CopyRequest.newBuilder()
+                .setSource(toBlobId(sourceUri))
+                .setTarget(toBlobId(destinationUri))
+                .setMegabytesCopiedPerChunk(archiveMegabytesPerChunk)
+                .build();
+
+        long startedAt = System.nanoTime();
+        try {
+            CopyWriter copyWriter = storage.copy(copyRequest);
+            while (!copyWriter.isDone()) {
+                copyWriter.copyChunk();
+            }
+            recordTransfer("copy", copyWriter.getTotalBytesCopied(), startedAt);
+            LOGGER.info("Copied " + copyWriter.getTotalBytesCopied() + " bytes in GCS: " + sourceUri + " -> " + destinationUri);
+        } catch (StorageException e) {
+            recordTransferFailure("copy");
+            LOGGER.log(Level.SEVERE, "Failed to copy file in GCS: " + sourceUri + " -> " + destinationUri, e);
+            throw new RuntimeException("Failed to copy file in GCS: " + sourceUri + " -> " + destinationUri, e);
+        }
+    }
+
+    /**
+     * Returns a fingerprint from the MD5 or CRC32C that GCS already stores for the object, or null
+     * when it has neither and the content has to be hashed locally.
+     */
+    public String storedFingerprint(String gcsUri) {
+        BlobInfo blob = getObjectInfo(gcsUri);
+        if (blob.getMd5() != null) {
+            return "md5:" + blob.getMd5();
         }
+        if (blob.getCrc32c() != null) {
+            // CRC32C is only 32 bits wide, so the size is included to make collisions less likely
+            return "crc32c:" + blob.getCrc32c() + ":" + blob.getSize();
+        }
+        return null;
+    }
+
+    public BlobInfo getObjectInfo(String gcsUri) {
+        Blob blob = guard.call("get", () -> storage.get(toBlobId(gcsUri)));
+        if (blob == null) {
+            throw new RuntimeException("File not found in GCS: " + gcsUri);
+        }
+        return blob;
+    }
+
+    /**
+     * Reads a small object, such as a manifest, into memory.
+     */
+    public byte[] readObject(String gcsUri) {
+        try {
+            return guard.call("read", () -> storage.readAllBytes(toBlobId(gcsUri)));
+        } catch (StorageException e) {
+            if (e.getCode() == 404) {
+                throw new RuntimeException("File not found in GCS: " + gcsUri, e);
+            }
+            throw new RuntimeException("Failed to read file from GCS: " + gcsUri, e);
+        }
+    }
+
+    /**
+     * Writes a small object, such as a manifest, in a single request.
+     */
+    public void writeObject(String gcsUri, byte[] content, String contentType) {
+        try {
+            guard.run("write", () -> storage.create(BlobInfo.newBuilder(toBlobId(gcsUri)).setContentType(contentType).build(), content));
+            LOGGER.info("Wrote " + content.length + " bytes to GCS: " + gcsUri);
+        } catch (StorageException e) {
+            LOGGER.log(Level.SEVERE, "Failed to write file to GCS: " + gcsUri, e);
+            throw new RuntimeException("Failed to write file to GCS: " + gcsUri, e);
+        }
+    }
+
+    /**
+     * Returns a V4 signed URL through which tools outside the client library, like FFprobe, can
+     * read the object. Signing needs service account credentials.
+     */
+    public URL signedReadUrl(String gcsUri, long validitySeconds) {
+        return storage.signUrl(BlobInfo.newBuilder(toBlobId(gcsUri)).build(), validitySeconds, TimeUnit.SECONDS,
+                Storage.SignUrlOption.withV4Signature());
     }
 
     public String generateGcsUri(String bucketName, String fileName) {
         return "gs://" + bucketName + "/" + fileName;
     }
 
+    /**
+     * Downloads an object to a local file. Objects below the parallel threshold use a single
+     * stream; larger ones are split into byte ranges that are fetched concurrently and written
+     * at their offsets into a preallocated file, then checked against the object's CRC32C.
+     */
     public void downloadFromGcs(String gcsUri, File destination) {
-        String[] uriParts = gcsUri.replace("gs://", "").split("/", 2);
-        if (uriParts.length != 2) {
-            throw new IllegalArgumentException("Invalid GCS URI format: " + gcsUri);
-        }
-        String bucketName = uriParts[0];
-        String objectName = uriParts[1];
+        guard.run("download", () -> downloadOnce(gcsUri, destination));
+    }
 
-        BlobId blobId = BlobId.of(bucketName, objectName);
+    private void downloadOnce(String gcsUri, File destination) {
+        BlobId blobId = toBlobId(gcsUri);
         Blob blob = storage.get(blobId);
 
         if (blob != null) {
+            long startedAt = System.nanoTime();
             try {
-                blob.downloadTo(destination.toPath());
+                if (blob.getSize() < downloadParallelThreshold) {
+                    blob.downloadTo(destination.toPath());
+                } else {
+                    downloadInRanges(blob, destination.toPath());
+                }
+                recordTransfer("download", blob.getSize(), startedAt);
                 LOGGER.info("Downloaded file from GCS: " + gcsUri);
 
+            } catch (IOException e) {
+                recordTransferFailure("download");
+                LOGGER.log(Level.SEVERE, "Failed to download file from GCS: " + gcsUri, e);
+                throw new RuntimeException("Failed to download file from GCS: " + gcsUri, e);
             } catch (StorageException e) {
+                recordTransferFailure("download");
                 LOGGER.log(Level.SEVERE, "Failed to download file from GCS: " + gcsUri, e);
                 throw new RuntimeException("Failed to download file from GCS: " + gcsUri, e);
             }
@@ -95,4 +353,127 @@ public class GcsService {
             throw new RuntimeException("File not found in GCS: " + gcsUri);
         }
     }
+
+    private void downloadInRanges(Blob blob, Path destination) throws IOException {
+        long size = blob.getSize();
+        // Pin the generation so every range reads the same version of the object
+        BlobId blobId = blob.getBlobId();
+
+        try (FileChannel output = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Preallocate by writing the last byte, so ranges can be written at their offsets in any order
+            output.write(ByteBuffer.wrap(new byte[1]), size - 1);
+
+            List<Future<?>> ranges = new ArrayList<>();
+            for (long start = 0; start < size; start += downloadRangeSize) {
+                long rangeStart = start;
+                long rangeEnd = Math.min(size, start + downloadRangeSize);
+                ranges.add(downloadExecutor.submit(() -> {
+                    downloadRange(blobId, output, rangeStart, rangeEnd);
+                    return null;
+                }));
+            }
+            awaitRanges(ranges, blobId);
+
+            if (blob.getCrc32c() != null) {
+                String actualCrc32c = crc32cOf(output, size);
+                if (!actualCrc32c.equals(blob.getCrc32c())) {
+                    throw new IOException("CRC32C mismatch for " + blobId.toGsUtilUri() + ": expected "
+                            + blob.getCrc32c() + " but downloaded " + actualCrc32c);
+                }
+            }
+        }
+    }
+
+    private void awaitRanges(List<Future<?>> ranges, BlobId blobId) throws IOException {
+        try {
+            for (Future<?> range : ranges) {
+                range.get();
+            }
+        } catch (ExecutionException e) {
+            ranges.forEach(range -> range.cancel(true));
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Ranged download failed for " + blobId.toGsUtilUri(), e.getCause());
+        } catch (InterruptedException e) {
+            ranges.forEach(range -> range.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during ranged download of " + blobId.toGsUtilUri(), e);
+        }
+    }
+
+    private void downloadRange(BlobId blobId, FileChannel output, long start, long end) throws IOException {
+        ByteBuffer buffer = downloadBuffers.get();
+        long position = start;
+        int attempts = 0;
+
+        while (true) {
+            try (ReadChannel reader = storage.reader(blobId)) {
+                reader.seek(position);
+                reader.limit(end);
+                while (position < end) {
+                    buffer.clear();
+                    if (reader.read(buffer) < 0) {
+                        throw new EOFException("Unexpected end of " + blobId.toGsUtilUri() + " at offset " + position);
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        position += output.write(buffer, position);
+                    }
+                }
+                return;
+            } catch (IOException | StorageException e) {
+                if (++attempts >= downloadMaxRangeAttempts) {
+                    throw e;
+                }
+                // Bytes already written stay in place; the retry continues from the current offset
+                LOGGER.log(Level.WARNING, "Range read of " + blobId.toGsUtilUri() + " failed at offset " + position
+                        + ", retrying (attempt " + attempts + ")", e);
+            }
+        }
+    }
+
+    private static String crc32cOf(FileChannel channel, long size) throws IOException {
+        CRC32C crc32c = new CRC32C();
+        for (long offset = 0; offset < size; offset += CRC_MAPPING_SIZE) {
+            crc32c.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CRC_MAPPING_SIZE, size - offset)));
+        }
+        long value = crc32c.getValue();
+        byte[] bigEndian = {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        return Base64.getEncoder().encodeToString(bigEndian);
+    }
+
+    /**
+     * Throughput is the rate of {@code gcs.transfer.bytes}; the size summary shows the object mix.
+     */
+    private void recordTransfer(String direction, long bytes, long startedAtNanos) {
+        Timer.builder("gcs.transfer.duration")
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("gcs.transfer.bytes")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .increment(bytes);
+        DistributionSummary.builder("gcs.transfer.size")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    private void recordTransferFailure(String direction) {
+        meterRegistry.counter("gcs.transfer.failures", "direction", direction).increment();
+    }
+
+    private BlobId toBlobId(String gcsUri) {
+        String[] uriParts = gcsUri.replace("gs://", "").split("/", 2);
+        if (uriParts.length != 2) {
+            throw new IllegalArgumentException("Invalid GCS URI format: " + gcsUri);
+        }
+        return BlobId.of(uriParts[0], uriParts[1]);
+    }
 }
@@ -0,0 +1,465 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves ingested records off the Kafka consumer thread and decides which video gets the next
+ * processing slot. Each record joins the queue of its priority lane: the lane named by
+ * {@code ProcessedContent.priority}, else the lane of its topic, else the default lane. Up to
+ * {@code max-in-flight} videos are processed at once, shared between backlogged lanes in
+ * proportion to their weights, with {@code reserved-slots} of them open only to the first lane.
+ * A record that has waited longer than {@code max-wait-seconds} goes ahead of the weights, so
+ * no lane starves.
+ * <p>
+ * When a topic has {@code max-queued} records waiting, its partitions are paused until half of
+ * them are admitted; topics of other lanes keep flowing. The pause is per topic, not per lane:
+ * records that pick a lane through their {@code priority} field wait behind every other record of
+ * a paused topic, so a lane that must keep flowing under a backlog needs its own topic in
+ * {@code lane-topics}. Offsets are acknowledged per partition in order, and only up to the
+ * highest offset below which every record has finished processing.
+ * A record whose failure could be neither retried nor dead-lettered is never acknowledged, so it
+ * is read again once its partition is reassigned or the pod restarts.
+ * While the circuit breaker of a backend is open, the whole listener container is paused, so
+ * videos wait in Kafka instead of piling up behind the outage.
+ */
+@Service
+public class IngestDispatcher implements ConsumerAwareRebalanceListener {
+    private static final Logger logger = LoggerFactory.getLogger(IngestDispatcher.class);
+
+    public static final String LISTENER_ID = "video-ingested-listener";
+
+    private final VideoProcessingService videoProcessingService;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final BackendGuards backendGuards;
+
+    @Value("${processing.ingest.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${processing.ingest.worker-threads:16}")
+    private int workerThreads;
+
+    // <name>:<weight>, highest priority first
+    @Value("${processing.ingest.lanes:urgent:8,standard:3,bulk:1}")
+    private String[] laneSettings;
+
+    @Value("${processing.ingest.default-lane:standard}")
+    private String defaultLaneName;
+
+    // <topic>:<lane> for topics that carry a single lane
+    @Value("${processing.ingest.lane-topics:}")
+    private String[] laneTopicSettings;
+
+    @Value("${processing.ingest.reserved-slots:8}")
+    private int reservedSlots;
+
+    @Value("${processing.ingest.max-wait-seconds:600}")
+    private long maxWaitSeconds;
+
+    @Value("${processing.ingest.max-queued:256}")
+    private int maxQueued;
+
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final Map<String, Lane> lanesByTopic = new HashMap<>();
+    private final Map<String, Integer> queuedByTopic = new HashMap<>();
+    private final Set<String> pausedTopics = new HashSet<>();
+    private final Map<TopicPartition, PartitionOffsets> partitionOffsets = new ConcurrentHashMap<>();
+    private final Set<String> unhealthyBackends = new HashSet<>();
+    private Lane topLane;
+    private Lane defaultLane;
+    private ExecutorService workers;
+
+    // Guarded by this
+    private int inFlight;
+    private double virtualTime;
+
+    public IngestDispatcher(VideoProcessingService videoProcessingService, KafkaListenerEndpointRegistry listenerRegistry,
+                            MeterRegistry meterRegistry, BackendGuards backendGuards) {
+        this.videoProcessingService = videoProcessingService;
+        this.listenerRegistry = listenerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.backendGuards = backendGuards;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String setting : laneSettings) {
+            String[] parts = setting.trim().split(":");
+            Lane lane = new Lane(parts[0], parts.length > 1 ? Double.parseDouble(parts[1]) : 1);
+            lanes.put(lane.name, lane);
+            Gauge.builder("processing.ingest.queued", lane, l -> l.queued)
+                    .tag("lane", lane.name)
+                    .description("Records waiting for a processing slot")
+                    .register(meterRegistry);
+            Gauge.builder("processing.ingest.lane.in-flight", lane, l -> l.inFlight)
+                    .tag("lane", lane.name)
+                    .register(meterRegistry);
+            Gauge.builder("processing.ingest.oldest-wait", lane, this::oldestWaitSeconds)
+                    .tag("lane", lane.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+        if (lanes.isEmpty()) {
+            throw new IllegalStateException("processing.ingest.lanes must name at least one lane");
+        }
+        topLane = lanes.values().iterator().next();
+        defaultLane = laneNamed(defaultLaneName);
+
+        for (String setting : laneTopicSettings) {
+            if (!setting.isBlank()) {
+                String[] parts = setting.trim().split(":");
+                lanesByTopic.put(parts[0], laneNamed(parts[1]));
+            }
+        }
+        // Never leave the lower lanes without a slot
+        reservedSlots = Math.min(reservedSlots, maxInFlight - 1);
+
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        backendGuards.addHealthListener(this::onBackendHealthChanged);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Called on the consumer thread. Registers the record's offset and queues the video in its
+     * lane; the record is acknowledged once it and every earlier record on its partition have
+     * finished.
+     */
+    public void dispatch(ConsumerRecord<String, ProcessedContent> record, Acknowledgment acknowledgment) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        PartitionOffsets offsets = partitionOffsets.computeIfAbsent(partition, key -> new PartitionOffsets());
+        offsets.register(record.offset(), acknowledgment);
+
+        Lane lane = laneOf(record.value(), record.topic());
+        synchronized (this) {
+            enqueue(lane, new QueuedRecord(record.value(), partition, record.offset(), offsets, System.nanoTime()));
+            int queued = queuedByTopic.merge(record.topic(), 1, Integer::sum);
+            if (queued >= maxQueued && pausedTopics.add(record.topic())) {
+                logger.info("{} records of topic {} waiting, pausing it", queued, record.topic());
+                setPaused(record.topic(), true);
+            }
+            admit();
+        }
+    }
+
+    /**
+     * Queues a video that did not arrive through Kafka, such as one resumed after a restart. It
+     * waits for a slot in its lane like any record, but has no offset to acknowledge.
+     */
+    public void submit(ProcessedContent content) {
+        Lane lane = laneOf(content, null);
+        synchronized (this) {
+            enqueue(lane, new QueuedRecord(content, null, -1, null, System.nanoTime()));
+            admit();
+        }
+    }
+
+    private void enqueue(Lane lane, QueuedRecord queued) {
+        if (lane.queue.isEmpty()) {
+            // An idle lane rejoins at the current virtual time instead of spending credit saved while idle
+            lane.pass = Math.max(lane.pass, virtualTime);
+        }
+        lane.queue.add(queued);
+        lane.queued++;
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    /**
+     * Starts queued videos while there are free slots, picking the lane each time.
+     */
+    private void admit() {
+        Lane lane;
+        while ((lane = nextLane()) != null) {
+            QueuedRecord queued = lane.queue.poll();
+            lane.queued--;
+            virtualTime = lane.pass;
+            lane.pass += 1 / lane.weight;
+            lane.inFlight++;
+            inFlight++;
+
+            if (queued.partition != null) {
+                String topic = queued.partition.topic();
+                queuedByTopic.merge(topic, -1, Integer::sum);
+                resumeIfDrained(topic);
+            }
+
+            lane.waitTimer.record(System.nanoTime() - queued.enqueuedAt, TimeUnit.NANOSECONDS);
+            start(lane, queued);
+        }
+    }
+
+    /**
+     * Resumes a paused topic once no more than half of its maximum queue is waiting.
+     */
+    private void resumeIfDrained(String topic) {
+        int remaining = queuedByTopic.getOrDefault(topic, 0);
+        if (remaining <= maxQueued / 2 && pausedTopics.remove(topic)) {
+            logger.info("{} records of topic {} waiting, resuming it", remaining, topic);
+            setPaused(topic, false);
+        }
+    }
+
+    /**
+     * The lane whose turn it is, or null if no slot is free to any lane with waiting records. A
+     * lane with a record past the maximum wait goes first; otherwise the lane that is furthest
+     * behind its weighted share.
+     */
+    private Lane nextLane() {
+        long overdueBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(maxWaitSeconds);
+        Lane next = null;
+        Lane overdue = null;
+        for (Lane lane : lanes.values()) {
+            int slots = lane == topLane ? maxInFlight : maxInFlight - reservedSlots;
+            if (lane.queue.isEmpty() || inFlight >= slots) {
+                continue;
+            }
+            long enqueuedAt = lane.queue.peek().enqueuedAt;
+            if (enqueuedAt < overdueBefore && (overdue == null || enqueuedAt < overdue.queue.peek().enqueuedAt)) {
+                overdue = lane;
+            }
+            if (next == null || lane.pass < next.pass) {
+                next = lane;
+            }
+        }
+        return overdue != null ? overdue : next;
+    }
+
+    private void start(Lane lane, QueuedRecord queued) {
+        ProcessedContent content = queued.content;
+        workers.execute(() -> {
+            CompletableFuture<Void> processing;
+            try {
+                processing = content != null
+                        ? videoProcessingService.processVideo(content, queued.partition != null ? queued.partition.topic() : null)
+                        : CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                logger.error("Error processing content for video ID: {}", content.getVideoId(), e);
+                processing = CompletableFuture.failedFuture(e);
+            }
+            processing.whenComplete((ignored, e) -> finish(lane, queued, e == null));
+        });
+    }
+
+    private void finish(Lane lane, QueuedRecord queued, boolean recorded) {
+        if (!recorded) {
+            // Holding back the offset, and every later one of the partition, keeps the record in Kafka
+            logger.error("Outcome of video ID {} was not recorded; leaving offset {} of {} unacknowledged",
+                    queued.content != null ? queued.content.getVideoId() : null, queued.offset, queued.partition);
+            meterRegistry.counter("processing.ingest.unacknowledged").increment();
+        } else if (queued.offsets != null) {
+            Acknowledgment acknowledgment = queued.offsets.complete(queued.offset);
+            // Offsets of a revoked partition belong to its new owner now
+            if (acknowledgment != null && partitionOffsets.get(queued.partition) == queued.offsets) {
+                acknowledgment.acknowledge();
+            }
+        }
+
+        synchronized (this) {
+            lane.inFlight--;
+            inFlight--;
+            admit();
+        }
+    }
+
+    private Lane laneOf(ProcessedContent content, String topic) {
+        String priority = content != null ? content.getPriority() : null;
+        if (priority != null) {
+            Lane lane = lanes.get(priority);
+            if (lane != null) {
+                return lane;
+            }
+            logger.warn("Unknown priority {} for video ID {}, using its topic's lane", priority, content.getVideoId());
+        }
+        return topic != null ? lanesByTopic.getOrDefault(topic, defaultLane) : defaultLane;
+    }
+
+    private Lane laneNamed(String name) {
+        Lane lane = lanes.get(name);
+        if (lane == null) {
+            throw new IllegalStateException("Ingest lane " + name + " is not one of processing.ingest.lanes " + lanes.keySet());
+        }
+        return lane;
+    }
+
+    private synchronized double oldestWaitSeconds(Lane lane) {
+        QueuedRecord oldest = lane.queue.peek();
+        return oldest != null ? (System.nanoTime() - oldest.enqueuedAt) / 1e9 : 0;
+    }
+
+    /**
+     * Pauses intake while any backend is unhealthy. This is independent of the per-topic partition
+     * pauses: the container resumes with those partitions still paused.
+     */
+    private void onBackendHealthChanged(String backend, boolean unhealthy) {
+        synchronized (unhealthyBackends) {
+            boolean wasPaused = !unhealthyBackends.isEmpty();
+            if (unhealthy) {
+                unhealthyBackends.add(backend);
+            } else {
+                unhealthyBackends.remove(backend);
+            }
+            boolean pause = !unhealthyBackends.isEmpty();
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+            if (pause == wasPaused || container == null) {
+                return;
+            }
+            if (pause) {
+                logger.warn("Pausing ingest while {} is unhealthy", unhealthyBackends);
+                container.pause();
+            } else {
+                logger.info("Backends healthy again, resuming ingest");
+                container.resume();
+            }
+        }
+    }
+
+    /**
+     * Pauses or resumes the topic's partitions assigned to this pod. Partitions assigned later are
+     * paused on assignment while the topic stays paused.
+     */
+    private void setPaused(String topic, boolean pause) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        Collection<TopicPartition> assigned = container != null ? container.getAssignedPartitions() : null;
+        if (assigned == null) {
+            return;
+        }
+        for (TopicPartition partition : assigned) {
+            if (!partition.topic().equals(topic)) {
+                continue;
+            }
+            if (pause) {
+                container.pausePartition(partition);
+            } else {
+                container.resumePartition(partition);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        List<TopicPartition> paused;
+        synchronized (this) {
+            paused = partitions.stream().filter(partition -> pausedTopics.contains(partition.topic())).toList();
+        }
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container != null) {
+            paused.forEach(container::pausePartition);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        revoke(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        revoke(partitions);
+    }
+
+    /**
+     * Forgets the partitions' offsets and drops their records that have not started; the new
+     * owner reads them again from the last committed offset. A paused topic with few enough
+     * records left is resumed here, since no admission of its records may come to do it.
+     */
+    private void revoke(Collection<TopicPartition> partitions) {
+        partitions.forEach(partitionOffsets::remove);
+        synchronized (this) {
+            for (Lane lane : lanes.values()) {
+                List<QueuedRecord> dropped = new ArrayList<>();
+                lane.queue.removeIf(queued -> partitions.contains(queued.partition) && dropped.add(queued));
+                lane.queued -= dropped.size();
+                dropped.forEach(queued -> queuedByTopic.merge(queued.partition.topic(), -1, Integer::sum));
+            }
+            List.copyOf(pausedTopics).forEach(this::resumeIfDrained);
+        }
+    }
+
+    private class Lane {
+        private final String name;
+        private final double weight;
+        private final ArrayDeque<QueuedRecord> queue = new ArrayDeque<>();
+        private final Timer waitTimer;
+        // Guarded by the dispatcher; the counters are read without it by the gauges
+        private volatile int queued;
+        private volatile int inFlight;
+        // Virtual time of this lane's next admission; advances by 1/weight per admitted record
+        private double pass;
+
+        private Lane(String name, double weight) {
+            this.name = name;
+            this.weight = weight;
+            this.waitTimer = Timer.builder("processing.ingest.wait")
+                    .tag("lane", name)
+                    .description("Time from receipt to a processing slot")
+                    .register(meterRegistry);
+        }
+    }
+
+    // Partition and offsets are null for a video submitted without a Kafka record
+    private record QueuedRecord(ProcessedContent content, TopicPartition partition, long offset,
+                                PartitionOffsets offsets, long enqueuedAt) {
+    }
+
+    private static class PartitionOffsets {
+        private final TreeMap<Long, Acknowledgment> pending = new TreeMap<>();
+        private final Set<Long> completed = new HashSet<>();
+
+        synchronized void register(long offset, Acknowledgment acknowledgment) {
+            pending.put(offset, acknowledgment);
+        }
+
+        /**
+         * Marks an offset finished and returns the acknowledgment of the highest offset that can
+         * now be committed, or null if an earlier record is still in flight.
+         */
+        synchronized Acknowledgment complete(long offset) {
+            completed.add(offset);
+            Acknowledgment committable = null;
+            while (!pending.isEmpty() && completed.remove(pending.firstKey())) {
+                committable = pending.pollFirstEntry().getValue();
+            }
+            return committable;
+        }
+    }
+}
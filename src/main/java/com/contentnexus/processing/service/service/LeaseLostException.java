@@ -0,0 +1,12 @@
+package com.contentnexus.processing.service.service;
+
+/**
+ * Thrown when a write for a video is refused because this pod no longer holds the video's lease.
+ * Another pod has taken the video over, so this pod stops processing it without recording a failure.
+ */
+public class LeaseLostException extends RuntimeException {
+
+    public LeaseLostException(String videoId) {
+        super("Lease for video ID " + videoId + " is held by another pod");
+    }
+}
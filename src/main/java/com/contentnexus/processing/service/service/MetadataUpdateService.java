@@ -1,19 +1,71 @@
 package com.contentnexus.processing.service.service;
 
+import com.contentnexus.processing.service.entity.ContentProcessedEvent;
 import com.contentnexus.processing.service.entity.ProcessedContent;
 import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Writes processing state. While this pod has claimed the video, writes only apply as long as it
+ * still holds the lease, so a pod that lost the lease cannot overwrite the new owner's progress.
+ */
 @Service
 public class MetadataUpdateService {
 
         private final ProcessedContentRepository processedContentRepository;
+        private final ProcessedContentWriteBuffer writeBuffer;
+        private final ProcessingLeaseService leaseService;
 
-        public MetadataUpdateService(ProcessedContentRepository processedContentRepository) {
+        // Terminal states ("Processed"/"Failed") skip the write-behind delay unless this is disabled
+        @Value("${processing.metadata.sync-terminal-writes:true}")
+        private boolean syncTerminalWrites;
+
+        public MetadataUpdateService(ProcessedContentRepository processedContentRepository,
+                                     ProcessedContentWriteBuffer writeBuffer, ProcessingLeaseService leaseService) {
             this.processedContentRepository = processedContentRepository;
+            this.writeBuffer = writeBuffer;
+            this.leaseService = leaseService;
         }
 
         public void updateMetadata(ProcessedContent content) {
-            processedContentRepository.save(content);
+            if (content.getVideoId() == null) {
+                // Updates are merged by video ID, so content without one is saved directly
+                processedContentRepository.save(content);
+                return;
+            }
+            writeBuffer.write(content, leaseOwnerFor(content));
+        }
+
+        /**
+         * For state a restarted pod cannot rebuild, such as a created Transcoder job. Throws
+         * {@link LeaseLostException} if another pod has taken the video over.
+         */
+        public void updateCheckpoint(ProcessedContent content) {
+            writeBuffer.writeNow(content, leaseOwnerFor(content));
+        }
+
+        /**
+         * Also records the {@code content_processed} event in the same document write, for
+         * {@link ContentEventRelay} to publish once the write is durable. Throws
+         * {@link LeaseLostException} if another pod has taken the video over.
+         */
+        public void updateTerminalStatus(ProcessedContent content) {
+            // Under the monitor the write buffer holds while capturing a document and its event
+            synchronized (content) {
+                content.setPendingEvent(ContentProcessedEvent.of(content));
+            }
+            if (content.getVideoId() == null) {
+                processedContentRepository.save(content);
+            } else if (syncTerminalWrites) {
+                writeBuffer.writeNow(content, leaseOwnerFor(content));
+            } else {
+                writeBuffer.write(content, leaseOwnerFor(content));
+            }
+        }
+
+        // Failures recorded without a claim, e.g. because the claim itself failed, are written unfenced
+        private String leaseOwnerFor(ProcessedContent content) {
+            return leaseService.isClaimedHere(content.getVideoId()) ? leaseService.getOwnerId() : null;
         }
 }
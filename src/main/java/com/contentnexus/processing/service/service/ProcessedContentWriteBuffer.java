@@ -0,0 +1,421 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ContentProcessedEvent;
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind buffer for {@link ProcessedContent} updates. Updates are keyed by video ID so that
+ * several updates to the same video collapse into its latest state, and are flushed as a single
+ * unordered bulk write once the batch size is reached or the flush interval elapses. Each update
+ * replaces the stored state: fields that are null in memory are removed from the document.
+ */
+@Service
+public class ProcessedContentWriteBuffer {
+
+    /** What a flush wrote for one video, captured together with the document it was written from. */
+    public record FlushedContent(String videoId, ContentProcessedEvent pendingEvent) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedContentWriteBuffer.class);
+    // Never overwritten from the in-memory copy; the lease is owned by ProcessedContentLeaseRepository
+    private static final Set<String> UNMANAGED_FIELDS = Set.of("_id", "_class", "leaseOwner", "leaseExpiresAt");
+    // Written when set but never removed from here; ContentEventRelay removes an event once it is published
+    private static final Set<String> SET_ONLY_FIELDS = Set.of("pendingEvent");
+    // Server errors worth another attempt: elections, shutdowns, network trouble, time limits and write conflicts
+    private static final Set<Integer> TRANSIENT_ERROR_CODES = Set.of(6, 7, 50, 89, 91, 112, 189, 262, 9001, 10107,
+            11600, 11602, 13435, 13436);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${processing.metadata.flush-batch-size:100}")
+    private int flushBatchSize;
+
+    @Value("${processing.metadata.flush-interval-millis:500}")
+    private long flushIntervalMillis;
+
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final List<Consumer<List<FlushedContent>>> flushListeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Set while a size-triggered flush is queued, so a backlog queues one flush rather than one per write
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean shuttingDown;
+    private ScheduledExecutorService scheduler;
+    // Fields unset when null in memory, so a cleared value such as errorDetails does not survive
+    private List<String> clearableFields;
+
+    private volatile long lastFlushDurationMillis;
+    private volatile long lastFlushDelayMillis;
+    private volatile int lastFlushSize;
+
+    public ProcessedContentWriteBuffer(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        clearableFields = new ArrayList<>();
+        mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(ProcessedContent.class)
+                .forEach(property -> {
+                    String field = property.getFieldName();
+                    if (!UNMANAGED_FIELDS.contains(field) && !SET_ONLY_FIELDS.contains(field)) {
+                        clearableFields.add(field);
+                    }
+                });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "processed-content-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Queues the content's current state. A later write for the same video replaces this one if
+     * it has not been flushed yet.
+     */
+    public void write(ProcessedContent content) {
+        write(content, null);
+    }
+
+    /**
+     * Like {@link #write(ProcessedContent)}, but the update only applies while {@code leaseOwner}
+     * still holds the video's lease; otherwise it is dropped. A null owner writes unconditionally.
+     */
+    public void write(ProcessedContent content, String leaseOwner) {
+        enqueue(content, leaseOwner);
+        if (pending.size() < flushBatchSize) {
+            return;
+        }
+        if (shuttingDown) {
+            // The flusher no longer takes tasks; late writes are flushed by the writing thread
+            flush();
+        } else if (flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutdown started after the check above
+                flushRequested.set(false);
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Queues the content and flushes before returning, so the write is durable once this returns.
+     * Throws if this content's update failed, whatever happened to the rest of the batch.
+     */
+    public void writeNow(ProcessedContent content) {
+        writeNow(content, null);
+    }
+
+    /**
+     * Like {@link #writeNow(ProcessedContent)}, fenced on {@code leaseOwner} as in
+     * {@link #write(ProcessedContent, String)}. Throws {@link LeaseLostException} if the owner no
+     * longer holds the lease.
+     */
+    public void writeNow(ProcessedContent content, String leaseOwner) {
+        PendingWrite write = enqueue(content, leaseOwner);
+        flush();
+        try {
+            // Settled by now: drained either by this flush or by one that held the lock before it
+            write.durable.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Registers a callback that receives every batch once it is durable. Callbacks run on the
+     * flushing thread and must hand off anything slow.
+     */
+    public void addFlushListener(Consumer<List<FlushedContent>> listener) {
+        flushListeners.add(listener);
+    }
+
+    /**
+     * Writes every pending update in one unordered bulk operation. Each update, and the outbox
+     * event it carries, is captured as the batch is drained, so listeners only ever see what was
+     * written even while processing threads keep changing the content. Updates that failed with a
+     * transient error are put back unless a newer update for the same video arrived in the
+     * meantime; updates the server rejects for good are logged and dropped, so one bad document
+     * does not hold up the rest. Fenced updates that matched no document lost their lease and
+     * are dropped. Every other update of the batch counts as written.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<PendingWrite> batch = new ArrayList<>(pending.size());
+            List<DrainedWrite> drained = new ArrayList<>(pending.size());
+            for (String videoId : new ArrayList<>(pending.keySet())) {
+                PendingWrite write = pending.remove(videoId);
+                if (write != null) {
+                    batch.add(write);
+                    drained.add(drain(write));
+                }
+            }
+
+            long startedAt = System.currentTimeMillis();
+            Map<Integer, BulkWriteError> errors = new HashMap<>();
+            BulkWriteResult result;
+            try {
+                BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedContent.class);
+                for (DrainedWrite write : drained) {
+                    if (write.leaseOwner != null) {
+                        // The video's record exists from the claim on, so a fenced update never inserts
+                        bulkOperations.updateOne(write.query, write.update);
+                    } else {
+                        bulkOperations.upsert(write.query, write.update);
+                    }
+                }
+                result = bulkOperations.execute();
+            } catch (BulkOperationException e) {
+                if (e.getErrors().isEmpty()) {
+                    // No per-update errors, e.g. only the write concern failed; nothing is known to be written
+                    batch.forEach(write -> requeue(write, e));
+                    throw e;
+                }
+                e.getErrors().forEach(error -> errors.put(error.getIndex(), error));
+                errors.forEach((index, error) -> settleFailed(batch.get(index), error, e));
+                result = e.getResult();
+            } catch (RuntimeException e) {
+                batch.forEach(write -> requeue(write, e));
+                throw e;
+            }
+
+            Set<Integer> fencedOut = fencedOut(drained, errors.keySet(), result);
+            for (int index : fencedOut) {
+                String videoId = drained.get(index).flushed.videoId();
+                logger.warn("Dropped update of video ID {}: its lease has moved to another pod", videoId);
+                batch.get(index).durable.completeExceptionally(new LeaseLostException(videoId));
+            }
+
+            List<DrainedWrite> written = new ArrayList<>(drained.size());
+            for (int index = 0; index < drained.size(); index++) {
+                if (!errors.containsKey(index) && !fencedOut.contains(index)) {
+                    written.add(drained.get(index));
+                    batch.get(index).durable.complete(null);
+                }
+            }
+            written.forEach(ProcessedContentWriteBuffer::consumeWrittenEvent);
+
+            long finishedAt = System.currentTimeMillis();
+            lastFlushDurationMillis = finishedAt - startedAt;
+            lastFlushDelayMillis = finishedAt - batch.stream().mapToLong(write -> write.enqueuedAt).min().orElse(finishedAt);
+            lastFlushSize = written.size();
+            logger.debug("Flushed {} processed content updates in {} ms, {} failed", lastFlushSize, lastFlushDurationMillis,
+                    errors.size());
+
+            List<FlushedContent> flushed = written.stream().map(DrainedWrite::flushed).toList();
+            for (Consumer<List<FlushedContent>> listener : flushListeners) {
+                try {
+                    listener.accept(flushed);
+                } catch (RuntimeException e) {
+                    logger.error("Flush listener failed", e);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // Time the last bulk write took
+    public long getLastFlushDurationMillis() {
+        return lastFlushDurationMillis;
+    }
+
+    // Time the oldest update of the last batch waited before it was durable
+    public long getLastFlushDelayMillis() {
+        return lastFlushDelayMillis;
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Failed to flush processed content updates; they will be retried", e);
+        }
+    }
+
+    private PendingWrite enqueue(ProcessedContent content, String leaseOwner) {
+        PendingWrite write = new PendingWrite(content, leaseOwner, System.currentTimeMillis(), new CompletableFuture<>());
+        PendingWrite replaced = pending.put(content.getVideoId(), write);
+        if (replaced != null) {
+            // The newer update carries the replaced one's state, so it settles both
+            write.durable.whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    replaced.durable.completeExceptionally(failure);
+                } else {
+                    replaced.durable.complete(null);
+                }
+            });
+        }
+        return write;
+    }
+
+    /**
+     * Fails the write's waiters and queues it again for the next flush, unless a newer update for
+     * the same video is already queued.
+     */
+    private void requeue(PendingWrite write, RuntimeException failure) {
+        write.durable.completeExceptionally(failure);
+        pending.putIfAbsent(write.content.getVideoId(),
+                new PendingWrite(write.content, write.leaseOwner, write.enqueuedAt, new CompletableFuture<>()));
+    }
+
+    private void settleFailed(PendingWrite write, BulkWriteError error, BulkOperationException failure) {
+        if (TRANSIENT_ERROR_CODES.contains(error.getCode())) {
+            logger.warn("Update of video ID {} failed with error {}, will be retried: {}",
+                    write.content.getVideoId(), error.getCode(), error.getMessage());
+            requeue(write, failure);
+        } else {
+            // Validation failures, key clashes and oversized documents fail the same way every time
+            logger.error("Dropping update of video ID {} rejected with error {}: {}",
+                    write.content.getVideoId(), error.getCode(), error.getMessage());
+            write.durable.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Captures the content's update and outbox event in one step. {@link MetadataUpdateService}
+     * records events while holding the content's monitor, so an event is never captured without
+     * the state it describes, nor left out of an update that reports it.
+     */
+    private DrainedWrite drain(PendingWrite write) {
+        ProcessedContent content = write.content;
+        synchronized (content) {
+            return new DrainedWrite(content, write.leaseOwner, queryFor(content, write.leaseOwner), updateFor(content),
+                    new FlushedContent(content.getVideoId(), content.getPendingEvent()));
+        }
+    }
+
+    /**
+     * Returns the indexes of fenced updates that matched no document. Every update matches at
+     * most one document, so the owners are only looked up when the batch matched fewer than it
+     * wrote.
+     */
+    private Set<Integer> fencedOut(List<DrainedWrite> drained, Set<Integer> failed, BulkWriteResult result) {
+        List<Integer> fenced = new ArrayList<>();
+        for (int index = 0; index < drained.size(); index++) {
+            if (drained.get(index).leaseOwner != null && !failed.contains(index)) {
+                fenced.add(index);
+            }
+        }
+        if (fenced.isEmpty() || result.getMatchedCount() + result.getUpserts().size() >= drained.size() - failed.size()) {
+            return Set.of();
+        }
+
+        Query owners = Query.query(Criteria.where("videoId").in(fenced.stream().map(index -> drained.get(index).flushed.videoId()).toList()));
+        owners.fields().include("videoId").include("leaseOwner");
+        Map<String, String> ownerByVideoId = new HashMap<>();
+        mongoTemplate.find(owners, ProcessedContent.class)
+                .forEach(content -> ownerByVideoId.put(content.getVideoId(), content.getLeaseOwner()));
+        Set<Integer> fencedOut = new HashSet<>();
+        for (int index : fenced) {
+            DrainedWrite write = drained.get(index);
+            if (!Objects.equals(ownerByVideoId.get(write.flushed.videoId()), write.leaseOwner)) {
+                fencedOut.add(index);
+            }
+        }
+        return fencedOut;
+    }
+
+    /**
+     * Once an event is durable, later writes of the content must not repeat it: ContentEventRelay
+     * removes it from the document after publishing, and a repeat would bring it back.
+     */
+    private static void consumeWrittenEvent(DrainedWrite write) {
+        ContentProcessedEvent event = write.flushed.pendingEvent();
+        if (event == null) {
+            return;
+        }
+        synchronized (write.content) {
+            // A newer event recorded since the drain is left for the next write
+            if (write.content.getPendingEvent() == event) {
+                write.content.setPendingEvent(null);
+            }
+        }
+    }
+
+    private Query queryFor(ProcessedContent content, String leaseOwner) {
+        Criteria criteria = content.getId() != null
+                ? Criteria.where("_id").is(content.getId())
+                : Criteria.where("videoId").is(content.getVideoId());
+        return Query.query(leaseOwner != null ? criteria.and("leaseOwner").is(leaseOwner) : criteria);
+    }
+
+    private Update updateFor(ProcessedContent content) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(content, document);
+        UNMANAGED_FIELDS.forEach(document::remove);
+
+        Update update = new Update();
+        document.forEach(update::set);
+        clearableFields.stream()
+                .filter(field -> !document.containsKey(field))
+                .forEach(update::unset);
+        return update;
+    }
+
+    // durable settles once the update is written, fails for good or is superseded by one that settles
+    private record PendingWrite(ProcessedContent content, String leaseOwner, long enqueuedAt, CompletableFuture<Void> durable) {
+    }
+
+    private record DrainedWrite(ProcessedContent content, String leaseOwner, Query query, Update update, FlushedContent flushed) {
+    }
+}
@@ -0,0 +1,163 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure a video is processed by one pod at a time. A pod claims the video's lease before
+ * processing it and renews every lease it holds on a heartbeat, so long transcodes keep their
+ * claim while a crashed pod's leases expire and can be taken over.
+ */
+@Service
+public class ProcessingLeaseService {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingLeaseService.class);
+
+    private final ProcessedContentRepository processedContentRepository;
+
+    @Value("${processing.lease.owner-id:}")
+    private String ownerId;
+
+    @Value("${processing.lease.duration-millis:120000}")
+    private long leaseDurationMillis;
+
+    @Value("${processing.lease.heartbeat-millis:30000}")
+    private long heartbeatMillis;
+
+    private final Set<String> heldLeases = ConcurrentHashMap.newKeySet();
+    // Videos claimed or being claimed on this pod, until released; a lease that was taken over stays here
+    private final Set<String> localVideos = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public ProcessingLeaseService(ProcessedContentRepository processedContentRepository) {
+        this.processedContentRepository = processedContentRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (ownerId == null || ownerId.isEmpty()) {
+            ownerId = hostName() + "-" + UUID.randomUUID();
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "processing-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::renewLeases, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        // Let other pods pick these up right away instead of waiting for the leases to expire
+        heldLeases.forEach(this::release);
+    }
+
+    /**
+     * Claims the video for this pod. Returns the persisted record if the claim succeeded, or empty
+     * if another pod, or this one, is processing the video or it has already been processed. The
+     * store accepts a claim by the same owner, to take a lease back after a restart with a fixed
+     * owner ID, so a redelivery while the video runs here is refused before the store is asked.
+     */
+    public Optional<ProcessedContent> tryAcquire(String videoId) {
+        if (!localVideos.add(videoId)) {
+            return Optional.empty();
+        }
+        Optional<ProcessedContent> claimed;
+        try {
+            claimed = processedContentRepository.claim(videoId, ownerId, leaseDuration());
+        } catch (RuntimeException e) {
+            localVideos.remove(videoId);
+            throw e;
+        }
+        if (claimed.isPresent()) {
+            heldLeases.add(videoId);
+        } else {
+            localVideos.remove(videoId);
+        }
+        return claimed;
+    }
+
+    public boolean isHeld(String videoId) {
+        return heldLeases.contains(videoId);
+    }
+
+    /**
+     * Whether this pod claimed the video and has not released it yet, even if the lease has since
+     * been taken over. Writes for such a video are fenced on this pod's lease.
+     */
+    public boolean isClaimedHere(String videoId) {
+        return localVideos.contains(videoId);
+    }
+
+    public void release(String videoId) {
+        heldLeases.remove(videoId);
+        localVideos.remove(videoId);
+        try {
+            processedContentRepository.release(videoId, ownerId);
+        } catch (Exception e) {
+            logger.warn("Failed to release lease for video ID: {}; it will expire on its own", videoId, e);
+        }
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public int getHeldCount() {
+        return heldLeases.size();
+    }
+
+    /**
+     * Renews every held lease in one write, so a pod holding many leases renews them all well
+     * within their duration.
+     */
+    private void renewLeases() {
+        List<String> videoIds = List.copyOf(heldLeases);
+        if (videoIds.isEmpty()) {
+            return;
+        }
+        try {
+            Set<String> renewed = processedContentRepository.renew(videoIds, ownerId, leaseDuration());
+            for (String videoId : videoIds) {
+                if (!renewed.contains(videoId)) {
+                    logger.warn("Lease for video ID {} was taken over by another pod", videoId);
+                    heldLeases.remove(videoId);
+                }
+            }
+        } catch (Exception e) {
+            // Keep the leases; the next heartbeat retries before they expire
+            logger.error("Failed to renew {} leases", videoIds.size(), e);
+        }
+    }
+
+    private Duration leaseDuration() {
+        return Duration.ofMillis(leaseDurationMillis);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown-host";
+        }
+    }
+}
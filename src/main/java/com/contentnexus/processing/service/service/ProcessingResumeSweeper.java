@@ -0,0 +1,56 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.repository.ProcessedContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Picks up videos whose processing stopped mid-way, e.g. when the pod that held them was
+ * restarted during a deploy, so their Transcoder jobs are re-attached without waiting for Kafka
+ * to redeliver the record. Videos still leased by a live pod are skipped by the lease claim.
+ * Resumed videos go through the {@link IngestDispatcher}, so they share its processing slots
+ * with ingested ones instead of flooding the pipeline at startup.
+ */
+@Service
+public class ProcessingResumeSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingResumeSweeper.class);
+
+    private final ProcessedContentRepository processedContentRepository;
+    private final IngestDispatcher ingestDispatcher;
+
+    @Value("${processing.resume.sweep-on-startup:true}")
+    private boolean sweepOnStartup;
+
+    @Value("${processing.resume.sweep-limit:500}")
+    private int sweepLimit;
+
+    public ProcessingResumeSweeper(ProcessedContentRepository processedContentRepository,
+                                   IngestDispatcher ingestDispatcher) {
+        this.processedContentRepository = processedContentRepository;
+        this.ingestDispatcher = ingestDispatcher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        if (!sweepOnStartup) {
+            return;
+        }
+
+        try {
+            List<ProcessedContent> unfinished = processedContentRepository
+                    .findByStatusAndProcessingStageNotNull("Processing", PageRequest.of(0, sweepLimit));
+            logger.info("Found {} unfinished videos to resume", unfinished.size());
+            unfinished.forEach(ingestDispatcher::submit);
+        } catch (Exception e) {
+            logger.error("Resume sweep failed; unfinished videos will be resumed on redelivery", e);
+        }
+    }
+}
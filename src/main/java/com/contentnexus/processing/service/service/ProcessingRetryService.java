@@ -0,0 +1,216 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.resilience.BackendGuard;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+/**
+ * Routes failed videos off the ingest topics. A transient failure goes to the retry topic of its
+ * tier, {@code <topic-prefix><n>} for the n-th retry, with the time it is due; the
+ * {@link RetryTopicListener} puts it back on its ingest topic once that time has passed. Videos
+ * that failed permanently or ran out of retries go to the dead-letter topic, from which
+ * {@link DeadLetterReplayService} can re-queue them.
+ */
+@Service
+public class ProcessingRetryService {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingRetryService.class);
+
+    public static final String ATTEMPT_HEADER = "processing-retry-attempt";
+    public static final String DUE_AT_HEADER = "processing-retry-due-at";
+    public static final String FAILURE_STAGE_HEADER = "processing-failure-stage";
+    public static final String FAILURE_REASON_HEADER = "processing-failure-reason";
+    public static final String FAILURE_EXCEPTION_HEADER = "processing-failure-exception";
+    public static final String ORIGINAL_TOPIC_HEADER = "processing-original-topic";
+
+    private final KafkaTemplate<String, ProcessedContent> kafkaTemplate;
+    private final BackendGuards backendGuards;
+    private final MeterRegistry meterRegistry;
+
+    // Delay before each retry, e.g. the second value is the wait before the second retry
+    @Value("${processing.retry.delays:30s,5m,30m}")
+    private String[] delaySettings;
+
+    @Value("${processing.retry.topic-prefix:video_ingested-retry-}")
+    private String topicPrefix;
+
+    @Value("${processing.retry.dead-letter-topic:video_ingested-dlt}")
+    private String deadLetterTopic;
+
+    // Where retries of videos with an unknown source topic, e.g. resumed ones, go
+    @Value("${processing.retry.default-topic:video_ingested}")
+    private String defaultTopic;
+
+    @Value("${processing.retry.send-timeout-seconds:30}")
+    private long sendTimeoutSeconds;
+
+    private Duration[] delays;
+    private String[] retryTopics;
+
+    public ProcessingRetryService(KafkaTemplate<String, ProcessedContent> kafkaTemplate, BackendGuards backendGuards,
+                                  MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.backendGuards = backendGuards;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        delays = Arrays.stream(delaySettings)
+                .filter(setting -> !setting.isBlank())
+                .map(setting -> DurationStyle.detectAndParse(setting.trim()))
+                .toArray(Duration[]::new);
+        retryTopics = IntStream.rangeClosed(1, delays.length)
+                .mapToObj(tier -> topicPrefix + tier)
+                .toArray(String[]::new);
+    }
+
+    public String[] getRetryTopics() {
+        return retryTopics;
+    }
+
+    public String getDeadLetterTopic() {
+        return deadLetterTopic;
+    }
+
+    public int getMaxRetries() {
+        return delays.length;
+    }
+
+    /**
+     * Whether the failure may go away on its own: throttling or an outage of a backend that
+     * outlasted its call retries, MongoDB being unreachable, or an I/O error. Everything else, such as a Transcoder job that
+     * reported itself failed, would fail the same way again.
+     */
+    public boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof UncheckedIOException || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause instanceof SdkException sdkException && sdkException.retryable()) {
+                return true;
+            }
+            if (cause instanceof TransientDataAccessException || cause instanceof MongoSocketException
+                    || cause instanceof MongoTimeoutException) {
+                return true;
+            }
+            if (backendGuards.gcs().classify("video", cause) != BackendGuard.Outcome.FAILED
+                    || backendGuards.transcoder().classify("video", cause) != BackendGuard.Outcome.FAILED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the video to the retry topic of its {@code retryCount}, which must already count this
+     * retry, and waits until Kafka has it, so the ingest record can be acknowledged after.
+     */
+    public void scheduleRetry(ProcessedContent content, String sourceTopic, String stage, String reason) {
+        int attempt = content.getRetryCount();
+        Duration delay = delays[attempt - 1];
+        ProducerRecord<String, ProcessedContent> record = new ProducerRecord<>(retryTopics[attempt - 1], content.getVideoId(), content);
+        Headers headers = record.headers();
+        setHeader(headers, ATTEMPT_HEADER, String.valueOf(attempt));
+        setHeader(headers, DUE_AT_HEADER, String.valueOf(System.currentTimeMillis() + delay.toMillis()));
+        setHeader(headers, FAILURE_STAGE_HEADER, stage);
+        setHeader(headers, FAILURE_REASON_HEADER, reason);
+        setHeader(headers, ORIGINAL_TOPIC_HEADER, sourceTopic != null ? sourceTopic : defaultTopic);
+        send(record);
+        meterRegistry.counter("processing.retries", "stage", stage, "attempt", String.valueOf(attempt)).increment();
+        logger.warn("Retrying video ID {} in {} (retry {} of {}) after failure in {} stage",
+                content.getVideoId(), delay, attempt, delays.length, stage);
+    }
+
+    /**
+     * Sends a video that will not be retried to the dead-letter topic. A failure to do so is logged
+     * only, since the video is marked failed either way.
+     */
+    public void deadLetter(ProcessedContent content, String sourceTopic, String stage, String reason, Throwable failure) {
+        ProducerRecord<String, ProcessedContent> record = new ProducerRecord<>(deadLetterTopic, content.getVideoId(), content);
+        Headers headers = record.headers();
+        setHeader(headers, ATTEMPT_HEADER, String.valueOf(content.getRetryCount() != null ? content.getRetryCount() : 0));
+        setHeader(headers, FAILURE_STAGE_HEADER, stage);
+        setHeader(headers, FAILURE_REASON_HEADER, reason);
+        setHeader(headers, FAILURE_EXCEPTION_HEADER, rootCause(failure).toString());
+        setHeader(headers, ORIGINAL_TOPIC_HEADER, sourceTopic != null ? sourceTopic : defaultTopic);
+        try {
+            send(record);
+            meterRegistry.counter("processing.dead-lettered", "stage", stage).increment();
+        } catch (RuntimeException e) {
+            logger.error("Failed to dead-letter video ID {}; it stays marked as failed", content.getVideoId(), e);
+        }
+    }
+
+    /**
+     * Puts a retry or dead-lettered record back on the ingest topic it came from. The failure
+     * headers go along, for the record's history; the due time does not.
+     */
+    public void requeue(ConsumerRecord<String, ProcessedContent> record) {
+        String topic = headerValue(record.headers(), ORIGINAL_TOPIC_HEADER);
+        ProducerRecord<String, ProcessedContent> requeued = new ProducerRecord<>(topic != null ? topic : defaultTopic,
+                record.key(), record.value());
+        for (Header header : record.headers()) {
+            if (!header.key().equals(DUE_AT_HEADER)) {
+                requeued.headers().add(header);
+            }
+        }
+        send(requeued);
+    }
+
+    public static String headerValue(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private void send(ProducerRecord<String, ProcessedContent> record) {
+        try {
+            kafkaTemplate.send(record).get(sendTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending to " + record.topic(), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to send video ID " + record.key() + " to " + record.topic(), e);
+        }
+    }
+
+    private static void setHeader(Headers headers, String key, String value) {
+        if (value != null) {
+            headers.remove(key);
+            headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,124 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves retries back to their ingest topics once they are due. Every record of a retry topic
+ * waits the same delay, so records come due in offset order: when one is not due yet, its
+ * partition is rewound to it and paused until it is. Other partitions and tiers keep flowing, and
+ * no thread sleeps.
+ */
+@Service
+public class RetryTopicListener implements ConsumerSeekAware {
+    private static final Logger logger = LoggerFactory.getLogger(RetryTopicListener.class);
+
+    public static final String LISTENER_ID = "video-retry-listener";
+
+    private final ProcessingRetryService retryService;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${processing.retry.requeue-backoff-millis:5000}")
+    private long requeueBackoffMillis;
+
+    // Offset each paused partition was rewound to; later records of the same poll are skipped
+    private final Map<TopicPartition, Long> rewoundTo = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public RetryTopicListener(ProcessingRetryService retryService, KafkaListenerEndpointRegistry listenerRegistry,
+                              MeterRegistry meterRegistry) {
+        this.retryService = retryService;
+        this.listenerRegistry = listenerRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retry-topic-resume");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "#{@processingRetryService.retryTopics}",
+            groupId = "content-processing-retry", containerFactory = "retryListenerContainerFactory")
+    public void listen(ConsumerRecord<String, ProcessedContent> record, Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        Long rewound = rewoundTo.get(partition);
+        if (rewound != null) {
+            if (record.offset() > rewound) {
+                return;  // fetched before the rewind; delivered again once the partition resumes
+            }
+            rewoundTo.remove(partition);
+        }
+
+        long waitMillis = dueAt(record) - System.currentTimeMillis();
+        if (waitMillis > 0) {
+            pauseAt(partition, record.offset(), consumer, waitMillis);
+            return;
+        }
+
+        try {
+            retryService.requeue(record);
+        } catch (RuntimeException e) {
+            // Never thrown to the container, whose error handler would seek past a rewound partition
+            logger.warn("Failed to requeue video ID {} from {}, trying again in {} ms",
+                    record.key(), record.topic(), requeueBackoffMillis, e);
+            pauseAt(partition, record.offset(), consumer, requeueBackoffMillis);
+            return;
+        }
+        acknowledgment.acknowledge();
+        meterRegistry.counter("processing.retries.requeued", "topic", record.topic()).increment();
+        logger.info("Requeued video ID {} from {}", record.key(), record.topic());
+    }
+
+    private void pauseAt(TopicPartition partition, long offset, Consumer<?, ?> consumer, long pauseMillis) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        rewoundTo.put(partition, offset);
+        consumer.seek(partition, offset);
+        container.pausePartition(partition);
+        scheduler.schedule(() -> container.resumePartition(partition), pauseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long dueAt(ConsumerRecord<String, ProcessedContent> record) {
+        String dueAt = ProcessingRetryService.headerValue(record.headers(), ProcessingRetryService.DUE_AT_HEADER);
+        try {
+            return dueAt != null ? Long.parseLong(dueAt) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(rewoundTo::remove);
+    }
+}
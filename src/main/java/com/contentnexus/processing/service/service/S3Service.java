@@ -1,118 +1,160 @@
-/* package com.contentnexus.processing.service.service;
+package com.contentnexus.processing.service.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.exception.SdkClientException;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+import software.amazon.awssdk.transfer.s3.model.CompletedFileDownload;
+import software.amazon.awssdk.transfer.s3.model.CopyRequest;
+import software.amazon.awssdk.transfer.s3.model.DownloadFileRequest;
+import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * S3 (or S3-compatible) storage through the transfer manager on the CRT client configured in
+ * {@code S3Config}. Uploads above the part size run as parallel multipart uploads, downloads as
+ * parallel ranged GETs, and failed parts are retried by the client; a failure that reaches this
+ * class has exhausted those retries.
+ */
 @Service
-public class S3Service {
+@ConditionalOnProperty(name = "processing.archive.store", havingValue = "s3")
+public class S3Service implements BlobStore {
     private static final Logger LOGGER = LoggerFactory.getLogger(S3Service.class);
-    private final S3Client s3Client;
-    private final Path tempDirectory;
-
-    @Value("${cloud.aws.s3.raw-bucket}")
-    private String rawBucketName;
 
-    @Value("${cloud.aws.s3.processed-bucket}")
-    private String processedBucketName;
+    private final S3TransferManager transferManager;
+    private final MeterRegistry meterRegistry;
 
-    public S3Service(S3Client s3Client, Path tempDirectory) {
-        this.s3Client = s3Client;
-        this.tempDirectory = tempDirectory;
+    public S3Service(S3TransferManager transferManager, MeterRegistry meterRegistry) {
+        this.transferManager = transferManager;
+        this.meterRegistry = meterRegistry;
     }
 
-    public void downloadRawVideo(String key, File destinationFile) throws IOException {
-        // Remove the s3://bucket/ prefix if it exists
-        if (key.startsWith("s3://")) {
-            key = key.substring(key.indexOf('/', 5) + 1);
-        }
-
-        int maxAttempts = 3;
-        int attempt = 1;
-        boolean success = false;
-
-        while (attempt <= maxAttempts && !success) {
-            try {
-                LOGGER.info("Attempting to download video from S3, attempt {}", attempt);
-
-                if (destinationFile.exists()) {
-                    LOGGER.info("File already exists, deleting to avoid conflicts: {}", destinationFile.getAbsolutePath());
-                    if (!destinationFile.delete()) {
-                        throw new IOException("Failed to delete existing file: " + destinationFile.getAbsolutePath());
-                    }
-                }
-
-                // Download file from S3
-                GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                        .bucket(rawBucketName)
-                        .key(key)
-                        .build();
-
-                LOGGER.info("Downloading from bucket: {}, key: {}", rawBucketName, key);
-
-                try (var s3Object = s3Client.getObject(getObjectRequest);
-                     var fileOutputStream = Files.newOutputStream(destinationFile.toPath(), StandardOpenOption.CREATE_NEW)) {
-
-                    s3Object.transferTo(fileOutputStream);
-                    success = true;
-                    LOGGER.info("Video downloaded successfully: {}", destinationFile.getAbsolutePath());
-                }
+    @Override
+    public String scheme() {
+        return "s3";
+    }
 
-            } catch (NoSuchKeyException e) {
-                LOGGER.error("No such key exists in the bucket: {}", key, e);
-                throw new IOException("No such key exists in the bucket: " + key, e);
-            } catch (SdkClientException e) {
-                LOGGER.error("An error occurred while downloading video from S3, attempt {}", attempt, e);
-                attempt++;
+    @Override
+    public String generateUri(String bucketName, String key) {
+        return "s3://" + bucketName + "/" + key;
+    }
 
-                if (attempt > maxAttempts) {
-                    throw new IOException("Failed to download video from S3 after " + maxAttempts + " attempts", e);
-                }
+    @Override
+    public void upload(File file, String uri) {
+        String[] location = toBucketAndKey(uri);
+        long startedAt = System.nanoTime();
+        try {
+            transferManager.uploadFile(UploadFileRequest.builder()
+                            .putObjectRequest(request -> request.bucket(location[0]).key(location[1]))
+                            .source(file.toPath())
+                            .build())
+                    .completionFuture()
+                    .join();
+            recordTransfer("upload", file.length(), startedAt);
+            LOGGER.info("Uploaded {} bytes to S3: {}", file.length(), uri);
+        } catch (CompletionException | SdkException e) {
+            recordTransferFailure("upload");
+            LOGGER.error("Failed to upload file to S3: {} -> {}", file.getPath(), uri, e);
+            throw new RuntimeException("Failed to upload file to S3: " + file.getPath() + " -> " + uri, unwrap(e));
+        }
+    }
 
-                // Optionally, you can add a sleep or backoff strategy here before retrying
-                try {
-                    Thread.sleep(1000);  // sleep for 1 second before retrying
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Interrupted while waiting to retry", ie);
-                }
-            } catch (IOException e) {
-                LOGGER.error("I/O error occurred while handling the file: {}", destinationFile.getAbsolutePath(), e);
-                throw e;
+    @Override
+    public void download(String uri, File destination) {
+        String[] location = toBucketAndKey(uri);
+        long startedAt = System.nanoTime();
+        try {
+            CompletedFileDownload download = transferManager.downloadFile(DownloadFileRequest.builder()
+                            .getObjectRequest(request -> request.bucket(location[0]).key(location[1]))
+                            .destination(destination.toPath())
+                            .build())
+                    .completionFuture()
+                    .join();
+            recordTransfer("download", download.response().contentLength(), startedAt);
+            LOGGER.info("Downloaded file from S3: {}", uri);
+        } catch (CompletionException | SdkException e) {
+            recordTransferFailure("download");
+            // The CRT may report a missing key as a plain 404 rather than as NoSuchKeyException
+            if (unwrap(e) instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+                throw new RuntimeException("File not found in S3: " + uri, unwrap(e));
             }
+            LOGGER.error("Failed to download file from S3: {}", uri, e);
+            throw new RuntimeException("Failed to download file from S3: " + uri, unwrap(e));
         }
     }
 
-    public String uploadProcessedVideo(File file, String videoId) throws IOException {
-        String key = videoId + "/processed/" + System.currentTimeMillis() + "_" + file.getName();
+    /**
+     * Copies server-side; objects above the part size are copied as parallel multipart parts.
+     */
+    @Override
+    public void copy(String sourceUri, String destinationUri) {
+        String[] source = toBucketAndKey(sourceUri);
+        String[] destination = toBucketAndKey(destinationUri);
+        long startedAt = System.nanoTime();
         try {
-            s3Client.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(processedBucketName)
-                            .key(key)
-                            .build(),
-                    RequestBody.fromFile(file)
-            );
-        } catch (SdkClientException e) {
-            LOGGER.error("An error occurred while uploading processed video to S3: {}", e.getMessage(), e);
-            throw new IOException("An error occurred while uploading processed video to S3", e);
+            transferManager.copy(CopyRequest.builder()
+                            .copyObjectRequest(request -> request
+                                    .sourceBucket(source[0]).sourceKey(source[1])
+                                    .destinationBucket(destination[0]).destinationKey(destination[1]))
+                            .build())
+                    .completionFuture()
+                    .join();
+            Timer.builder("s3.transfer.duration")
+                    .tag("direction", "copy")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            LOGGER.info("Copied object in S3: {} -> {}", sourceUri, destinationUri);
+        } catch (CompletionException | SdkException e) {
+            recordTransferFailure("copy");
+            LOGGER.error("Failed to copy file in S3: {} -> {}", sourceUri, destinationUri, e);
+            throw new RuntimeException("Failed to copy file in S3: " + sourceUri + " -> " + destinationUri, unwrap(e));
         }
-        return "s3://" + processedBucketName + "/" + key;
     }
-}
 
+    /**
+     * Same meters as {@code gcs.transfer.*}, so both stores can be compared on one dashboard.
+     */
+    private void recordTransfer(String direction, long bytes, long startedAtNanos) {
+        Timer.builder("s3.transfer.duration")
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("s3.transfer.bytes")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .increment(bytes);
+        DistributionSummary.builder("s3.transfer.size")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    private void recordTransferFailure(String direction) {
+        meterRegistry.counter("s3.transfer.failures", "direction", direction).increment();
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
 
- */
\ No newline at end of file
+    private static String[] toBucketAndKey(String s3Uri) {
+        String[] uriParts = s3Uri.replace("s3://", "").split("/", 2);
+        if (uriParts.length != 2) {
+            throw new IllegalArgumentException("Invalid S3 URI format: " + s3Uri);
+        }
+        return uriParts;
+    }
+}
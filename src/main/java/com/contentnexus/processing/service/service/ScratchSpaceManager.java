@@ -0,0 +1,348 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import com.google.cloud.storage.BlobInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manages local scratch space under the {@code tempDirectory} bean. Every job gets its own
+ * workspace directory, and all files count against a disk quota; a download that does not fit
+ * waits until other jobs release space. Fetched objects are kept in a size-bounded LRU cache and
+ * shared by reference count, so retries and re-processing of the same object skip the download.
+ */
+@Service
+public class ScratchSpaceManager {
+    private static final Logger logger = LoggerFactory.getLogger(ScratchSpaceManager.class);
+
+    private final Path rootDirectory;
+    private final GcsService gcsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${processing.scratch.quota-bytes:21474836480}")
+    private long quotaBytes;
+
+    @Value("${processing.scratch.cache-max-bytes:5368709120}")
+    private long cacheMaxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition spaceChanged = lock.newCondition();
+    // Access-ordered, so iteration starts at the least recently used object
+    private final LinkedHashMap<String, CachedObject> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long cachedBytes;
+    private Path workspacesDirectory;
+    private Path cacheDirectory;
+
+    public ScratchSpaceManager(Path tempDirectory, GcsService gcsService, MeterRegistry meterRegistry) {
+        this.rootDirectory = tempDirectory;
+        this.gcsService = gcsService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Nothing from a previous run is tracked, so start from empty directories
+        workspacesDirectory = rootDirectory.resolve("jobs");
+        cacheDirectory = rootDirectory.resolve("cache");
+        FileSystemUtils.deleteRecursively(workspacesDirectory);
+        FileSystemUtils.deleteRecursively(cacheDirectory);
+        Files.createDirectories(workspacesDirectory);
+        Files.createDirectories(cacheDirectory);
+        logger.info("Scratch space at {} with a quota of {} bytes ({} bytes for cached objects)", rootDirectory, quotaBytes, cacheMaxBytes);
+    }
+
+    public Workspace openWorkspace(String videoId) throws IOException {
+        String prefix = String.valueOf(videoId).replaceAll("[^A-Za-z0-9._-]", "_") + "-";
+        return new Workspace(Files.createTempDirectory(workspacesDirectory, prefix));
+    }
+
+    /**
+     * Returns the video's workspace, opening it for the first stage that needs local files. It is
+     * closed when the video leaves the pipeline.
+     */
+    public Workspace workspaceFor(VideoContext context) throws IOException {
+        if (context.getWorkspace() == null) {
+            context.setWorkspace(openWorkspace(context.getVideoId()));
+        }
+        return context.getWorkspace();
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCachedBytes() {
+        lock.lock();
+        try {
+            return cachedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CachedObject acquire(String gcsUri) throws IOException {
+        long startedAt = System.nanoTime();
+        BlobInfo objectInfo = gcsService.getObjectInfo(gcsUri);
+        long generation = objectInfo.getGeneration() != null ? objectInfo.getGeneration() : 0L;
+        CachedObject entry;
+
+        lock.lock();
+        try {
+            while (true) {
+                entry = cache.get(gcsUri);
+                if (entry == null || entry.generation != generation && entry.references == 0) {
+                    if (entry != null) {
+                        evict(gcsUri, entry);
+                    }
+                    break;
+                }
+                if (entry.generation != generation) {
+                    // An older version is still in use; download this one uncached under its own name
+                    entry = null;
+                    break;
+                }
+                if (entry.ready) {
+                    entry.references++;
+                    logger.debug("Scratch cache hit for {}", gcsUri);
+                    recordFetch("hit", startedAt);
+                    return entry;
+                }
+                // Another job is downloading the same object
+                awaitSpaceChange();
+            }
+
+            reserve(objectInfo.getSize());
+            CachedObject download = new CachedObject(cacheDirectory.resolve(UUID.randomUUID().toString()),
+                    objectInfo.getSize(), generation);
+            download.references = 1;
+            if (entry == null && !cache.containsKey(gcsUri)) {
+                cache.put(gcsUri, download);
+                cachedBytes += download.size;
+            } else {
+                download.uncached = true;
+            }
+            entry = download;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            gcsService.downloadFromGcs(gcsUri, entry.path.toFile());
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                if (!entry.uncached) {
+                    cache.remove(gcsUri);
+                    cachedBytes -= entry.size;
+                }
+                delete(entry.path);
+                usedBytes -= entry.size;
+                spaceChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            throw new IOException("Failed to fetch " + gcsUri + " into scratch space", e);
+        }
+
+        lock.lock();
+        try {
+            entry.ready = true;
+            spaceChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        recordFetch("miss", startedAt);
+        return entry;
+    }
+
+    // Includes time spent waiting for quota or for another job's download of the same object
+    private void recordFetch(String cacheResult, long startedAtNanos) {
+        Timer.builder("scratch.fetch.duration")
+                .tag("cache", cacheResult)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void release(CachedObject entry) {
+        lock.lock();
+        try {
+            if (entry.uncached) {
+                // An uncached download is deleted as soon as its job is done with it
+                delete(entry.path);
+                usedBytes -= entry.size;
+            } else {
+                entry.references--;
+                trimCache();
+            }
+            spaceChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the bytes fit within the quota, evicting unreferenced cached objects first.
+     * Must be called with the lock held.
+     */
+    private void reserve(long bytes) throws IOException {
+        if (bytes > quotaBytes) {
+            throw new IOException("Object of " + bytes + " bytes exceeds the scratch quota of " + quotaBytes + " bytes");
+        }
+        while (usedBytes + bytes > quotaBytes) {
+            if (!evictLeastRecentlyUsed()) {
+                logger.info("Scratch quota reached ({} of {} bytes used), waiting for space", usedBytes, quotaBytes);
+                awaitSpaceChange();
+            }
+        }
+        usedBytes += bytes;
+    }
+
+    private void releaseReservation(long bytes) {
+        lock.lock();
+        try {
+            usedBytes -= bytes;
+            spaceChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void trimCache() {
+        while (cachedBytes > cacheMaxBytes && evictLeastRecentlyUsed()) {
+            // keep evicting until the cache fits or only referenced objects remain
+        }
+    }
+
+    private boolean evictLeastRecentlyUsed() {
+        Iterator<Map.Entry<String, CachedObject>> entries = cache.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, CachedObject> candidate = entries.next();
+            if (candidate.getValue().references == 0 && candidate.getValue().ready) {
+                entries.remove();
+                discard(candidate.getValue());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evict(String gcsUri, CachedObject entry) {
+        cache.remove(gcsUri);
+        discard(entry);
+    }
+
+    private void discard(CachedObject entry) {
+        delete(entry.path);
+        cachedBytes -= entry.size;
+        usedBytes -= entry.size;
+        spaceChanged.signalAll();
+    }
+
+    private void awaitSpaceChange() throws InterruptedIOException {
+        try {
+            spaceChanged.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for scratch space");
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            FileSystemUtils.deleteRecursively(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete scratch file {}", path, e);
+        }
+    }
+
+    private static class CachedObject {
+        private final Path path;
+        private final long size;
+        private final long generation;
+        private int references;
+        private boolean ready;
+        private boolean uncached;
+
+        private CachedObject(Path path, long size, long generation) {
+            this.path = path;
+            this.size = size;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Scratch space of a single job. Closing it releases the job's references to cached objects
+     * and deletes its own files.
+     */
+    public class Workspace implements AutoCloseable {
+        private final Path directory;
+        private final List<CachedObject> fetched = new ArrayList<>();
+        private long reservedBytes;
+
+        private Workspace(Path directory) {
+            this.directory = directory;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Returns a local, read-only copy of the object, downloading it unless it is cached.
+         */
+        public synchronized Path fetch(String gcsUri) throws IOException {
+            CachedObject entry = acquire(gcsUri);
+            fetched.add(entry);
+            return entry.path;
+        }
+
+        /**
+         * Reserves quota for a file this job is about to write and returns its path.
+         */
+        public synchronized Path reserve(String fileName, long expectedBytes) throws IOException {
+            lock.lock();
+            try {
+                ScratchSpaceManager.this.reserve(expectedBytes);
+            } finally {
+                lock.unlock();
+            }
+            reservedBytes += expectedBytes;
+            return directory.resolve(fileName);
+        }
+
+        @Override
+        public synchronized void close() {
+            fetched.forEach(ScratchSpaceManager.this::release);
+            fetched.clear();
+            delete(directory);
+            releaseReservation(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+}
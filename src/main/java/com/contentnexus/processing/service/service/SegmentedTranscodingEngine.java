@@ -0,0 +1,690 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.entity.Rendition;
+import com.contentnexus.processing.service.entity.TranscodeSegment;
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import com.contentnexus.processing.service.resilience.BackendGuard;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.google.cloud.video.transcoder.v1.CreateJobRequest;
+import com.google.cloud.video.transcoder.v1.EditAtom;
+import com.google.cloud.video.transcoder.v1.ElementaryStream;
+import com.google.cloud.video.transcoder.v1.Input;
+import com.google.cloud.video.transcoder.v1.Job;
+import com.google.cloud.video.transcoder.v1.JobConfig;
+import com.google.cloud.video.transcoder.v1.Manifest;
+import com.google.cloud.video.transcoder.v1.MuxStream;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import com.google.cloud.video.transcoder.v1.VideoStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Transcodes long videos as several Transcoder jobs that run in parallel, each covering one
+ * segment of the raw video through an edit list, so a video takes about as long as its longest
+ * segment rather than its full length. Segment boundaries fall on multiples of the template's
+ * keyframe and media segment interval, so every segment starts on a keyframe and the parts join
+ * without re-encoding:
+ * <ul>
+ *     <li>HLS media playlists are concatenated with a discontinuity between parts,</li>
+ *     <li>DASH manifests become one period per part,</li>
+ *     <li>progressive MP4 renditions are joined by FFmpeg with stream copy.</li>
+ * </ul>
+ * A failed segment is submitted again on its own, up to the configured number of attempts; once
+ * one runs out, the jobs of the segments still running are deleted. Each part is written to
+ * {@code segments/<index>/} under the video's output directory and the joined outputs to the
+ * directory itself, where a single job would have written them.
+ */
+@Service
+@ConditionalOnProperty(name = "processing.transcoding.segmented.enabled", havingValue = "true")
+public class SegmentedTranscodingEngine implements TranscodingEngine {
+    public static final String NAME = "transcoder-api-segmented";
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedTranscodingEngine.class);
+    private static final String INPUT_KEY = "input0";
+    private static final String DASH_NAMESPACE = "urn:mpeg:dash:schema:mpd:2011";
+    private static final Pattern URI_ATTRIBUTE = Pattern.compile("URI=\"([^\"]+)\"");
+
+    private final TranscoderServiceClient transcoderClient;
+    private final TranscoderJobPoller transcoderJobPoller;
+    private final TranscodeTemplateResolver templateResolver;
+    private final BackendGuard guard;
+    private final GcsService gcsService;
+    private final FfmpegService ffmpegService;
+    private final ScratchSpaceManager scratchSpaceManager;
+    private final MetadataUpdateService metadataUpdateService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${google.cloud.project-id}")
+    private String projectId;
+
+    @Value("${google.cloud.transcoder.location}")
+    private String location;
+
+    // Rounded up to a multiple of the template's segment duration
+    @Value("${processing.transcoding.segmented.segment-seconds:120}")
+    private long segmentSeconds;
+
+    // Longer videos get longer segments rather than more jobs
+    @Value("${processing.transcoding.segmented.max-fan-out:32}")
+    private int maxFanOut;
+
+    @Value("${processing.transcoding.segmented.max-segment-attempts:3}")
+    private int maxSegmentAttempts;
+
+    @Value("${processing.transcoding.segmented.probe-url-validity-seconds:900}")
+    private long probeUrlValiditySeconds;
+
+    @Value("${processing.transcoding.segmented.stitch-threads:2}")
+    private int stitchThreads;
+
+    private ExecutorService stitchExecutor;
+
+    public SegmentedTranscodingEngine(TranscoderServiceClient transcoderClient, TranscoderJobPoller transcoderJobPoller,
+                                      TranscodeTemplateResolver templateResolver, GcsService gcsService,
+                                      FfmpegService ffmpegService, ScratchSpaceManager scratchSpaceManager,
+                                      MetadataUpdateService metadataUpdateService, MeterRegistry meterRegistry,
+                                      BackendGuards backendGuards) {
+        this.transcoderClient = transcoderClient;
+        this.transcoderJobPoller = transcoderJobPoller;
+        this.templateResolver = templateResolver;
+        this.guard = backendGuards.transcoder();
+        this.gcsService = gcsService;
+        this.ffmpegService = ffmpegService;
+        this.scratchSpaceManager = scratchSpaceManager;
+        this.metadataUpdateService = metadataUpdateService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Resubmitting segments and stitching do blocking I/O, which must stay off the poller's callback threads
+        AtomicInteger threadCount = new AtomicInteger();
+        stitchExecutor = Executors.newFixedThreadPool(stitchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "segment-stitcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stitchExecutor.shutdownNow();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Presets cannot be combined with an edit list, and templates that already bring their own
+     * inputs or edits are left as they are.
+     */
+    @Override
+    public boolean supports(TranscodeTemplateResolver.ResolvedTemplate template) {
+        return template.config() != null
+                && template.config().getInputsCount() == 0
+                && template.config().getEditListCount() == 0;
+    }
+
+    /**
+     * Returns the duration of the raw video in seconds, probing it through a signed URL so only
+     * its headers are read, or a negative value if it cannot be probed.
+     */
+    public double durationOf(VideoContext context) throws InterruptedException {
+        if (context.getDurationSeconds() == null) {
+            double durationSeconds;
+            try {
+                String url = gcsService.signedReadUrl(context.getGcsInputUri(), probeUrlValiditySeconds).toString();
+                durationSeconds = ffmpegService.probeDurationSeconds(url);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not probe the duration of video ID {}", context.getVideoId(), e);
+                durationSeconds = -1;
+            }
+            context.setDurationSeconds(durationSeconds);
+        }
+        return context.getDurationSeconds();
+    }
+
+    @Override
+    public String submit(VideoContext context) throws Exception {
+        JobConfig config = templateResolver.resolve(context.getContent().getTemplateId()).config();
+        double durationSeconds = durationOf(context);
+        if (durationSeconds <= 0) {
+            throw new TranscodingFailedException("Cannot split video ID " + context.getVideoId() + " of unknown duration");
+        }
+        List<TranscodeSegment> segments = planSegments(config, durationSeconds);
+
+        // All creates go out as fast as the concurrency limit admits them; a failed one cancels the
+        // jobs created alongside it
+        String parent = String.format("projects/%s/locations/%s", projectId, location);
+        List<CompletableFuture<Job>> created = segments.stream()
+                .map(segment -> guard.callAsync("createJob", () -> BackendGuards.toCompletableFuture(
+                        transcoderClient.createJobCallable().futureCall(CreateJobRequest.newBuilder()
+                                .setParent(parent)
+                                .setJob(segmentJob(context, config, segment))
+                                .build()))))
+                .toList();
+        List<String> createdJobs = new ArrayList<>();
+        Exception failure = null;
+        for (int i = 0; i < segments.size(); i++) {
+            try {
+                segments.get(i).setJobName(created.get(i).get().getName());
+                segments.get(i).setAttempts(1);
+                createdJobs.add(segments.get(i).getJobName());
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        if (failure != null) {
+            createdJobs.forEach(this::deleteQuietly);
+            throw new TranscodingFailedException("Failed to create segment jobs for video ID " + context.getVideoId(),
+                    failure.getCause());
+        }
+
+        context.getContent().setTranscodeSegments(segments);
+        meterRegistry.summary("transcoding.segmented.segments").record(segments.size());
+        logger.info("Segmented transcoding started for video ID {}: {} segments over {} seconds",
+                context.getVideoId(), segments.size(), durationSeconds);
+        return NAME + "/" + context.getVideoId() + "/" + UUID.randomUUID();
+    }
+
+    @Override
+    public CompletableFuture<Output> await(VideoContext context, String jobName) {
+        List<TranscodeSegment> segments = context.getContent().getTranscodeSegments();
+        if (segments == null || segments.isEmpty()) {
+            return CompletableFuture.failedFuture(new TranscodingFailedException("Segmented job " + jobName + " has no segments"));
+        }
+
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<CompletableFuture<Job>> jobs = segments.stream().map(segment -> track(context, segment, abandoned)).toList();
+        return allOrFirstFailure(jobs)
+                .whenComplete((ignored, e) -> {
+                    if (e != null && abandoned.compareAndSet(false, true)) {
+                        abandonSiblings(context, segments, jobs);
+                    }
+                })
+                .thenApplyAsync(ignored -> stitch(context, segments, jobs.get(0).join()), stitchExecutor);
+    }
+
+    /**
+     * Deletes the jobs of segments still running once another segment has failed for good, since
+     * the video fails either way and every minute they run is billed.
+     */
+    private void abandonSiblings(VideoContext context, List<TranscodeSegment> segments, List<CompletableFuture<Job>> jobs) {
+        List<String> running = new ArrayList<>();
+        synchronized (context.getContent()) {
+            for (int i = 0; i < segments.size(); i++) {
+                if (!jobs.get(i).isDone()) {
+                    running.add(segments.get(i).getJobName());
+                }
+            }
+        }
+        if (running.isEmpty()) {
+            return;
+        }
+        logger.info("Deleting {} running segment jobs of failed video ID {}", running.size(), context.getVideoId());
+        meterRegistry.counter("transcoding.segmented.abandoned").increment(running.size());
+        for (String jobName : running) {
+            transcoderJobPoller.untrack(jobName);
+            stitchExecutor.execute(() -> deleteQuietly(jobName));
+        }
+    }
+
+    /**
+     * Cuts the video into segments of the configured length, or longer if that would exceed the
+     * maximum fan-out. A remainder shorter than one keyframe interval joins the last segment.
+     */
+    List<TranscodeSegment> planSegments(JobConfig config, double durationSeconds) {
+        long alignMillis = keyframeIntervalMillis(config);
+        long durationMillis = (long) Math.ceil(durationSeconds * 1000);
+        long lengthMillis = roundUp(segmentSeconds * 1000, alignMillis);
+        if ((durationMillis + lengthMillis - 1) / lengthMillis > maxFanOut) {
+            lengthMillis = roundUp((durationMillis + maxFanOut - 1) / maxFanOut, alignMillis);
+        }
+
+        List<TranscodeSegment> segments = new ArrayList<>();
+        for (long start = 0; start < durationMillis; start += lengthMillis) {
+            TranscodeSegment segment = new TranscodeSegment();
+            segment.setIndex(segments.size());
+            segment.setStartMillis(start);
+            boolean last = start + lengthMillis + alignMillis > durationMillis;
+            segment.setEndMillis(last ? null : start + lengthMillis);
+            segments.add(segment);
+            if (last) {
+                break;
+            }
+        }
+        return segments;
+    }
+
+    private CompletableFuture<Job> track(VideoContext context, TranscodeSegment segment, AtomicBoolean abandoned) {
+        return transcoderJobPoller.track(segment.getJobName())
+                .handle((job, e) -> e == null ? CompletableFuture.completedFuture(job) : retry(context, segment, e, abandoned))
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Job> retry(VideoContext context, TranscodeSegment segment, Throwable failure, AtomicBoolean abandoned) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (abandoned.get()) {
+            return CompletableFuture.failedFuture(cause);
+        }
+        if (segment.getAttempts() >= maxSegmentAttempts) {
+            return CompletableFuture.failedFuture(new TranscodingFailedException("Transcoding failed for segment "
+                    + segment.getIndex() + " after " + segment.getAttempts() + " attempts", cause));
+        }
+        logger.warn("Segment {} of video ID {} failed on attempt {}, submitting it again",
+                segment.getIndex(), context.getVideoId(), segment.getAttempts(), cause);
+        meterRegistry.counter("transcoding.segmented.retries").increment();
+        return CompletableFuture.supplyAsync(() -> resubmit(context, segment, abandoned), stitchExecutor)
+                .thenCompose(resubmitted -> track(context, resubmitted, abandoned));
+    }
+
+    private TranscodeSegment resubmit(VideoContext context, TranscodeSegment segment, AtomicBoolean abandoned) {
+        ProcessedContent content = context.getContent();
+        JobConfig config = templateResolver.resolve(content.getTemplateId()).config();
+        Job created = guard.call("createJob", () -> transcoderClient.createJob(
+                String.format("projects/%s/locations/%s", projectId, location), segmentJob(context, config, segment)));
+        // Recorded right away, so a restart re-attaches to the new job instead of retrying the failed one
+        synchronized (content) {
+            segment.setJobName(created.getName());
+            segment.setAttempts(segment.getAttempts() + 1);
+            metadataUpdateService.updateCheckpoint(content);
+        }
+        // Checked after the name is recorded, so either this or abandonSiblings deletes the new job
+        if (abandoned.get()) {
+            deleteQuietly(created.getName());
+            throw new CancellationException("Segment " + segment.getIndex() + " of video ID " + context.getVideoId()
+                    + " resubmitted after the video failed");
+        }
+        return segment;
+    }
+
+    private Job segmentJob(VideoContext context, JobConfig config, TranscodeSegment segment) {
+        EditAtom.Builder atom = EditAtom.newBuilder()
+                .setKey("atom0")
+                .addInputs(INPUT_KEY)
+                .setStartTimeOffset(protoDuration(segment.getStartMillis()));
+        if (segment.getEndMillis() != null) {
+            atom.setEndTimeOffset(protoDuration(segment.getEndMillis()));
+        }
+        return Job.newBuilder()
+                .setConfig(config.toBuilder()
+                        .addInputs(Input.newBuilder().setKey(INPUT_KEY).setUri(context.getGcsInputUri()))
+                        .addEditList(atom)
+                        .setOutput(com.google.cloud.video.transcoder.v1.Output.newBuilder()
+                                .setUri(context.getGcsOutputUri() + partDirectory(segment))))
+                .build();
+    }
+
+    private Output stitch(VideoContext context, List<TranscodeSegment> segments, Job firstJob) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            String outputUri = context.getGcsOutputUri();
+            JobConfig config = firstJob.getConfig().toBuilder().clearInputs().clearEditList().clearOutput().build();
+
+            List<String> manifestUris = new ArrayList<>();
+            List<String> mediaPlaylists = new ArrayList<>();
+            for (Manifest manifest : config.getManifestsList()) {
+                switch (manifest.getType()) {
+                    case HLS -> mediaPlaylists.addAll(stitchHls(outputUri, segments, manifest.getFileName()));
+                    case DASH -> stitchDash(outputUri, segments, manifest.getFileName());
+                    default -> throw new TranscodingFailedException("Cannot join manifest " + manifest.getFileName()
+                            + " of type " + manifest.getType());
+                }
+                manifestUris.add(outputUri + manifest.getFileName());
+            }
+
+            // Same layout as one job's output; segmented renditions point at their joined playlist where there is one
+            List<Rendition> renditions = templateResolver.renditionsOf(Job.newBuilder().setConfig(config).setOutputUri(outputUri).build());
+            for (Rendition rendition : renditions) {
+                String fileName = rendition.getUri().substring(outputUri.length());
+                if (!rendition.isSegmented()) {
+                    concatProgressive(context, segments, fileName);
+                    continue;
+                }
+                mediaPlaylists.stream()
+                        .filter(playlist -> playlist.startsWith(rendition.getKey() + "/") || playlist.startsWith(rendition.getKey() + "."))
+                        .findFirst()
+                        .ifPresent(playlist -> rendition.setUri(outputUri + playlist));
+            }
+
+            outcome = "success";
+            logger.info("Joined {} segments for video ID: {}", segments.size(), context.getVideoId());
+            return new Output(renditions, manifestUris);
+        } catch (TranscodingFailedException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranscodingFailedException("Joining segments interrupted", e);
+        } catch (Exception e) {
+            throw new TranscodingFailedException("Joining segments failed: " + e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer("transcoding.segmented.stitch.duration", "outcome", outcome));
+        }
+    }
+
+    /**
+     * Writes the master playlist of the first part as the joined one, and next to it one media
+     * playlist per entry that lists the segments of every part in order, with a discontinuity at
+     * each join. Returns the media playlist paths relative to the output directory.
+     */
+    private List<String> stitchHls(String outputUri, List<TranscodeSegment> segments, String manifestName) {
+        String directory = directoryOf(manifestName);
+        String master = readText(outputUri + partDirectory(segments.get(0)) + manifestName);
+
+        List<String> playlists = new ArrayList<>();
+        for (String playlist : playlistsOf(master)) {
+            String playlistPath = directory + playlist;
+            String upToOutput = "../".repeat(depthOf(playlistPath));
+
+            String version = "7";
+            long targetDuration = 0;
+            boolean independentSegments = false;
+            StringBuilder body = new StringBuilder();
+            for (TranscodeSegment segment : segments) {
+                String prefix = upToOutput + partDirectory(segment) + directoryOf(playlistPath);
+                if (segment.getIndex() > 0) {
+                    body.append("#EXT-X-DISCONTINUITY\n");
+                }
+                for (String line : readText(outputUri + partDirectory(segment) + playlistPath).split("\\R")) {
+                    if (line.startsWith("#EXT-X-TARGETDURATION:")) {
+                        targetDuration = Math.max(targetDuration, Long.parseLong(line.substring("#EXT-X-TARGETDURATION:".length()).trim()));
+                    } else if (line.startsWith("#EXT-X-VERSION:")) {
+                        version = line.substring("#EXT-X-VERSION:".length()).trim();
+                    } else if (line.equals("#EXT-X-INDEPENDENT-SEGMENTS")) {
+                        independentSegments = true;
+                    } else if (line.startsWith("#EXT-X-MAP:")) {
+                        body.append(rewriteUriAttribute(line, prefix)).append('\n');
+                    } else if (line.startsWith("#EXTINF:") || line.startsWith("#EXT-X-BYTERANGE:")) {
+                        body.append(line).append('\n');
+                    } else if (!line.isBlank() && !line.startsWith("#")) {
+                        body.append(relativeTo(prefix, line.trim())).append('\n');
+                    }
+                    // Everything else describes the part as a whole and is written once below
+                }
+            }
+
+            String joined = "#EXTM3U\n#EXT-X-VERSION:" + version + "\n"
+                    + "#EXT-X-TARGETDURATION:" + targetDuration + "\n"
+                    + "#EXT-X-MEDIA-SEQUENCE:0\n#EXT-X-PLAYLIST-TYPE:VOD\n"
+                    + (independentSegments ? "#EXT-X-INDEPENDENT-SEGMENTS\n" : "")
+                    + body + "#EXT-X-ENDLIST\n";
+            writeText(outputUri + playlistPath, joined, "application/vnd.apple.mpegurl");
+            playlists.add(playlistPath);
+        }
+
+        // The master refers to media playlists by relative path, which the joined ones now occupy
+        writeText(outputUri + manifestName, master, "application/vnd.apple.mpegurl");
+        return playlists;
+    }
+
+    /**
+     * Writes an MPD with the periods of every part, each shifted to its segment's start and given
+     * a base URL into the part's directory.
+     */
+    private void stitchDash(String outputUri, List<TranscodeSegment> segments, String manifestName) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+
+        Document joined = null;
+        Element mpd = null;
+        Duration lastPartDuration = Duration.ZERO;
+        String upToOutput = "../".repeat(depthOf(manifestName));
+        for (TranscodeSegment segment : segments) {
+            byte[] part = gcsService.readObject(outputUri + partDirectory(segment) + manifestName);
+            Document document = builder.parse(new ByteArrayInputStream(part));
+            if (joined == null) {
+                joined = builder.parse(new ByteArrayInputStream(part));
+                mpd = joined.getDocumentElement();
+                for (Element period : childElements(mpd, "Period")) {
+                    mpd.removeChild(period);
+                }
+            }
+            Element partMpd = document.getDocumentElement();
+            lastPartDuration = parseDuration(partMpd.getAttribute("mediaPresentationDuration"));
+
+            List<Element> periods = childElements(partMpd, "Period");
+            for (int i = 0; i < periods.size(); i++) {
+                Element period = (Element) joined.importNode(periods.get(i), true);
+                Duration start = Duration.ofMillis(segment.getStartMillis()).plus(parseDuration(period.getAttribute("start")));
+                period.setAttribute("id", periods.size() == 1 ? String.valueOf(segment.getIndex()) : segment.getIndex() + "-" + i);
+                period.setAttribute("start", start.toString());
+
+                String baseUrl = upToOutput + partDirectory(segment) + directoryOf(manifestName);
+                List<Element> baseUrls = childElements(period, "BaseURL");
+                if (baseUrls.isEmpty()) {
+                    String namespace = mpd.getNamespaceURI() != null ? mpd.getNamespaceURI() : DASH_NAMESPACE;
+                    Element element = joined.createElementNS(namespace, mpd.getPrefix() != null ? mpd.getPrefix() + ":BaseURL" : "BaseURL");
+                    element.setTextContent(baseUrl);
+                    period.insertBefore(element, period.getFirstChild());
+                } else {
+                    baseUrls.forEach(element -> element.setTextContent(relativeTo(baseUrl, element.getTextContent().trim())));
+                }
+                mpd.appendChild(period);
+            }
+        }
+
+        TranscodeSegment last = segments.get(segments.size() - 1);
+        mpd.setAttribute("mediaPresentationDuration", Duration.ofMillis(last.getStartMillis()).plus(lastPartDuration).toString());
+
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        StringWriter xml = new StringWriter();
+        transformer.transform(new DOMSource(joined), new StreamResult(xml));
+        writeText(outputUri + manifestName, xml.toString(), "application/dash+xml");
+    }
+
+    /**
+     * Joins a progressive rendition from its parts in scratch space, since MP4 files cannot be
+     * appended to each other in place.
+     */
+    private void concatProgressive(VideoContext context, List<TranscodeSegment> segments, String fileName)
+            throws IOException, InterruptedException {
+        ScratchSpaceManager.Workspace workspace = scratchSpaceManager.workspaceFor(context);
+        List<Path> parts = new ArrayList<>();
+        long totalBytes = 0;
+        for (TranscodeSegment segment : segments) {
+            Path part = workspace.fetch(context.getGcsOutputUri() + partDirectory(segment) + fileName);
+            parts.add(part);
+            totalBytes += Files.size(part);
+        }
+
+        Path joined = workspace.reserve("joined/" + fileName, totalBytes);
+        Files.createDirectories(joined.getParent());
+        ffmpegService.concat(parts, joined);
+        gcsService.uploadToGcs(joined.toFile(), context.getGcsOutputUri() + fileName);
+    }
+
+    /**
+     * The interval every segment boundary must be a multiple of: the least common multiple of
+     * the video GOP and media segment durations, or 6 seconds if the template sets neither.
+     */
+    private static long keyframeIntervalMillis(JobConfig config) {
+        BigInteger interval = BigInteger.ONE;
+        boolean set = false;
+        for (ElementaryStream stream : config.getElementaryStreamsList()) {
+            com.google.protobuf.Duration gop = gopDurationOf(stream);
+            if (gop != null) {
+                interval = lcm(interval, millisOf(gop));
+                set = true;
+            }
+        }
+        for (MuxStream muxStream : config.getMuxStreamsList()) {
+            if (muxStream.hasSegmentSettings() && muxStream.getSegmentSettings().hasSegmentDuration()) {
+                interval = lcm(interval, millisOf(muxStream.getSegmentSettings().getSegmentDuration()));
+                set = true;
+            }
+        }
+        return set ? interval.longValueExact() : 6000;
+    }
+
+    private static com.google.protobuf.Duration gopDurationOf(ElementaryStream stream) {
+        if (!stream.hasVideoStream()) {
+            return null;
+        }
+        VideoStream video = stream.getVideoStream();
+        if (video.hasH264() && video.getH264().hasGopDuration()) {
+            return video.getH264().getGopDuration();
+        }
+        if (video.hasH265() && video.getH265().hasGopDuration()) {
+            return video.getH265().getGopDuration();
+        }
+        if (video.hasVp9() && video.getVp9().hasGopDuration()) {
+            return video.getVp9().getGopDuration();
+        }
+        return null;
+    }
+
+    private static BigInteger lcm(BigInteger a, long millis) {
+        BigInteger b = BigInteger.valueOf(Math.max(1, millis));
+        return a.multiply(b).divide(a.gcd(b));
+    }
+
+    private static long millisOf(com.google.protobuf.Duration duration) {
+        return duration.getSeconds() * 1000 + duration.getNanos() / 1_000_000;
+    }
+
+    private static com.google.protobuf.Duration protoDuration(long millis) {
+        return com.google.protobuf.Duration.newBuilder()
+                .setSeconds(millis / 1000)
+                .setNanos((int) (millis % 1000) * 1_000_000)
+                .build();
+    }
+
+    private static long roundUp(long value, long multiple) {
+        return Math.max(multiple, (value + multiple - 1) / multiple * multiple);
+    }
+
+    private static String partDirectory(TranscodeSegment segment) {
+        return String.format("segments/%03d/", segment.getIndex());
+    }
+
+    /**
+     * Media playlists a master playlist refers to: variant URI lines and the URI attributes of
+     * alternative renditions and I-frame playlists.
+     */
+    private static Set<String> playlistsOf(String master) {
+        Set<String> playlists = new LinkedHashSet<>();
+        for (String line : master.split("\\R")) {
+            if (line.startsWith("#EXT-X-MEDIA:") || line.startsWith("#EXT-X-I-FRAME-STREAM-INF:")) {
+                Matcher uri = URI_ATTRIBUTE.matcher(line);
+                if (uri.find()) {
+                    playlists.add(uri.group(1));
+                }
+            } else if (!line.isBlank() && !line.startsWith("#")) {
+                playlists.add(line.trim());
+            }
+        }
+        playlists.removeIf(playlist -> playlist.contains("://") || playlist.startsWith("/"));
+        return playlists;
+    }
+
+    private static String rewriteUriAttribute(String line, String prefix) {
+        Matcher uri = URI_ATTRIBUTE.matcher(line);
+        return uri.find()
+                ? line.substring(0, uri.start(1)) + relativeTo(prefix, uri.group(1)) + line.substring(uri.end(1))
+                : line;
+    }
+
+    private static String relativeTo(String prefix, String uri) {
+        return uri.contains("://") || uri.startsWith("/") ? uri : prefix + uri;
+    }
+
+    private static String directoryOf(String path) {
+        return path.substring(0, path.lastIndexOf('/') + 1);
+    }
+
+    private static int depthOf(String path) {
+        return (int) path.chars().filter(c -> c == '/').count();
+    }
+
+    private static Duration parseDuration(String isoDuration) {
+        return isoDuration == null || isoDuration.isBlank() ? Duration.ZERO : Duration.parse(isoDuration);
+    }
+
+    private static List<Element> childElements(Element parent, String localName) {
+        List<Element> children = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element element && localName.equals(element.getLocalName())) {
+                children.add(element);
+            }
+        }
+        return children;
+    }
+
+    private String readText(String gcsUri) {
+        return new String(gcsService.readObject(gcsUri), StandardCharsets.UTF_8);
+    }
+
+    private void writeText(String gcsUri, String text, String contentType) {
+        gcsService.writeObject(gcsUri, text.getBytes(StandardCharsets.UTF_8), contentType);
+    }
+
+    private void deleteQuietly(String jobName) {
+        try {
+            guard.run("deleteJob", () -> transcoderClient.deleteJob(jobName));
+        } catch (RuntimeException e) {
+            logger.warn("Could not delete segment job {}", jobName, e);
+        }
+    }
+
+    /**
+     * Completes when every future has, or as soon as one fails, so a segment that has run out of
+     * attempts fails the video without waiting for the others.
+     */
+    private static CompletableFuture<Void> allOrFirstFailure(List<CompletableFuture<Job>> futures) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+        futures.forEach(future -> future.whenComplete((job, e) -> {
+            if (e != null) {
+                all.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        }));
+        return all;
+    }
+}
@@ -0,0 +1,281 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.Rendition;
+import com.contentnexus.processing.service.resilience.BackendGuard;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.google.cloud.video.transcoder.v1.AudioStream;
+import com.google.cloud.video.transcoder.v1.ElementaryStream;
+import com.google.cloud.video.transcoder.v1.Job;
+import com.google.cloud.video.transcoder.v1.JobConfig;
+import com.google.cloud.video.transcoder.v1.Manifest;
+import com.google.cloud.video.transcoder.v1.MuxStream;
+import com.google.cloud.video.transcoder.v1.SegmentSettings;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import com.google.cloud.video.transcoder.v1.VideoStream;
+import com.google.protobuf.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves {@code ProcessedContent.templateId} into what a Transcoder job needs:
+ * <ul>
+ *     <li>{@code preset/...} IDs are passed through as Transcoder presets,</li>
+ *     <li>the built-in ABR ladder ID produces an inline HLS/DASH config with one rung per configured resolution,</li>
+ *     <li>the built-in progressive ID produces an inline config with one H.264/AAC MP4 per configured
+ *     resolution, which the local FFmpeg engine can run as well as the Transcoder API,</li>
+ *     <li>any other ID names a JobTemplate in the project, whose config is fetched once and cached.</li>
+ * </ul>
+ * Resolved templates are kept in memory for the configured TTL.
+ */
+@Service
+public class TranscodeTemplateResolver {
+    private static final Logger logger = LoggerFactory.getLogger(TranscodeTemplateResolver.class);
+    private static final String PRESET_PREFIX = "preset/";
+    private static final String AUDIO_KEY = "audio-aac";
+
+    private final TranscoderServiceClient transcoderClient;
+    private final BackendGuard guard;
+
+    @Value("${google.cloud.project-id}")
+    private String projectId;
+
+    @Value("${google.cloud.transcoder.location}")
+    private String location;
+
+    // The Transcoder's own default when a job has neither config nor template
+    @Value("${processing.templates.default:preset/web-hd}")
+    private String defaultTemplateId;
+
+    @Value("${processing.templates.abr-ladder-id:abr-ladder}")
+    private String abrLadderId;
+
+    // Rungs as <width>x<height>:<bitrate in bps>, highest first
+    @Value("${processing.templates.abr-ladder:1920x1080:5000000,1280x720:2800000,854x480:1400000,640x360:800000}")
+    private String[] abrLadder;
+
+    @Value("${processing.templates.progressive-id:progressive-mp4}")
+    private String progressiveId;
+
+    // Renditions in the same format as the ABR ladder rungs
+    @Value("${processing.templates.progressive:1280x720:2800000,640x360:800000}")
+    private String[] progressiveRenditions;
+
+    @Value("${processing.templates.segment-duration-seconds:6}")
+    private long segmentDurationSeconds;
+
+    @Value("${processing.templates.cache-ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    private final Map<String, CachedTemplate> cache = new ConcurrentHashMap<>();
+
+    public TranscodeTemplateResolver(TranscoderServiceClient transcoderClient, BackendGuards backendGuards) {
+        this.transcoderClient = transcoderClient;
+        this.guard = backendGuards.transcoder();
+    }
+
+    public ResolvedTemplate resolve(String templateId) {
+        String effectiveId = templateId == null || templateId.isBlank() ? defaultTemplateId : templateId;
+
+        long now = System.currentTimeMillis();
+        CachedTemplate cached = cache.get(effectiveId);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.template;
+        }
+
+        ResolvedTemplate resolved;
+        if (effectiveId.startsWith(PRESET_PREFIX)) {
+            resolved = new ResolvedTemplate(effectiveId, null);
+        } else if (effectiveId.equals(abrLadderId)) {
+            resolved = new ResolvedTemplate(effectiveId, buildAbrLadder());
+        } else if (effectiveId.equals(progressiveId)) {
+            resolved = new ResolvedTemplate(effectiveId, buildProgressive());
+        } else {
+            String name = String.format("projects/%s/locations/%s/jobTemplates/%s", projectId, location, effectiveId);
+            logger.info("Fetching job template: {}", name);
+            resolved = new ResolvedTemplate(effectiveId,
+                    guard.call("getJobTemplate", () -> transcoderClient.getJobTemplate(name)).getConfig());
+        }
+
+        cache.put(effectiveId, new CachedTemplate(resolved, now + cacheTtlSeconds * 1000));
+        return resolved;
+    }
+
+    /**
+     * Lists every rendition a finished job wrote under its output URI.
+     */
+    public List<Rendition> renditionsOf(Job job) {
+        JobConfig config = job.getConfig();
+        String outputUri = outputUriOf(job);
+        Map<String, ElementaryStream> elementaryStreams = config.getElementaryStreamsList().stream()
+                .collect(Collectors.toMap(ElementaryStream::getKey, stream -> stream, (first, second) -> first));
+        Set<String> manifestStreams = config.getManifestsList().stream()
+                .flatMap(manifest -> manifest.getMuxStreamsList().stream())
+                .collect(Collectors.toSet());
+
+        List<Rendition> renditions = new ArrayList<>();
+        for (MuxStream muxStream : config.getMuxStreamsList()) {
+            Rendition rendition = new Rendition();
+            rendition.setKey(muxStream.getKey());
+            rendition.setContainer(muxStream.getContainer());
+            rendition.setSegmented(muxStream.getContainer().equals("fmp4") || muxStream.hasSegmentSettings()
+                    || manifestStreams.contains(muxStream.getKey()));
+            String fileName = !muxStream.getFileName().isEmpty()
+                    ? muxStream.getFileName()
+                    : rendition.isSegmented() ? muxStream.getKey() + "/" : muxStream.getKey() + "." + muxStream.getContainer();
+            rendition.setUri(outputUri + fileName);
+
+            for (String streamKey : muxStream.getElementaryStreamsList()) {
+                ElementaryStream stream = elementaryStreams.get(streamKey);
+                if (stream != null && stream.hasVideoStream()) {
+                    describeVideo(rendition, stream.getVideoStream());
+                }
+            }
+            renditions.add(rendition);
+        }
+        return renditions;
+    }
+
+    public List<String> manifestUrisOf(Job job) {
+        String outputUri = outputUriOf(job);
+        return job.getConfig().getManifestsList().stream()
+                .map(manifest -> outputUri + manifest.getFileName())
+                .toList();
+    }
+
+    private String outputUriOf(Job job) {
+        String outputUri = job.getConfig().hasOutput() && !job.getConfig().getOutput().getUri().isEmpty()
+                ? job.getConfig().getOutput().getUri()
+                : job.getOutputUri();
+        return outputUri.endsWith("/") ? outputUri : outputUri + "/";
+    }
+
+    private void describeVideo(Rendition rendition, VideoStream videoStream) {
+        switch (videoStream.getCodecSettingsCase()) {
+            case H264 -> {
+                rendition.setCodec("H.264");
+                rendition.setWidthPixels(videoStream.getH264().getWidthPixels());
+                rendition.setHeightPixels(videoStream.getH264().getHeightPixels());
+                rendition.setBitrateBps(videoStream.getH264().getBitrateBps());
+            }
+            case H265 -> {
+                rendition.setCodec("H.265");
+                rendition.setWidthPixels(videoStream.getH265().getWidthPixels());
+                rendition.setHeightPixels(videoStream.getH265().getHeightPixels());
+                rendition.setBitrateBps(videoStream.getH265().getBitrateBps());
+            }
+            case VP9 -> {
+                rendition.setCodec("VP9");
+                rendition.setWidthPixels(videoStream.getVp9().getWidthPixels());
+                rendition.setHeightPixels(videoStream.getVp9().getHeightPixels());
+                rendition.setBitrateBps(videoStream.getVp9().getBitrateBps());
+            }
+            default -> {
+                // codec not set; leave the rendition undescribed
+            }
+        }
+    }
+
+    /**
+     * One fMP4 video stream per rung plus a shared AAC stream, referenced by both an HLS and a
+     * DASH manifest. The top rung is also written as a progressive hd.mp4 for archiving.
+     */
+    private JobConfig buildAbrLadder() {
+        Duration segmentDuration = Duration.newBuilder().setSeconds(segmentDurationSeconds).build();
+        JobConfig.Builder config = JobConfig.newBuilder()
+                .addElementaryStreams(ElementaryStream.newBuilder()
+                        .setKey(AUDIO_KEY)
+                        .setAudioStream(AudioStream.newBuilder().setCodec("aac").setBitrateBps(128000)))
+                .addMuxStreams(MuxStream.newBuilder()
+                        .setKey("audio")
+                        .setContainer("fmp4")
+                        .addElementaryStreams(AUDIO_KEY)
+                        .setSegmentSettings(SegmentSettings.newBuilder().setSegmentDuration(segmentDuration)));
+
+        Manifest.Builder hls = Manifest.newBuilder().setFileName("manifest.m3u8").setType(Manifest.ManifestType.HLS).addMuxStreams("audio");
+        Manifest.Builder dash = Manifest.newBuilder().setFileName("manifest.mpd").setType(Manifest.ManifestType.DASH).addMuxStreams("audio");
+
+        for (int i = 0; i < abrLadder.length; i++) {
+            VideoStream.H264CodecSettings.Builder h264 = h264Of(abrLadder[i])
+                    // Keyframes on segment boundaries so every rung switches cleanly
+                    .setGopDuration(segmentDuration);
+            String streamKey = "video-" + h264.getHeightPixels() + "p";
+            String muxKey = h264.getHeightPixels() + "p";
+
+            config.addElementaryStreams(ElementaryStream.newBuilder()
+                    .setKey(streamKey)
+                    .setVideoStream(VideoStream.newBuilder().setH264(h264)));
+            config.addMuxStreams(MuxStream.newBuilder()
+                    .setKey(muxKey)
+                    .setContainer("fmp4")
+                    .addElementaryStreams(streamKey)
+                    .setSegmentSettings(SegmentSettings.newBuilder().setSegmentDuration(segmentDuration)));
+            hls.addMuxStreams(muxKey);
+            dash.addMuxStreams(muxKey);
+
+            if (i == 0) {
+                config.addMuxStreams(MuxStream.newBuilder()
+                        .setKey("hd")
+                        .setContainer("mp4")
+                        .addElementaryStreams(streamKey)
+                        .addElementaryStreams(AUDIO_KEY));
+            }
+        }
+
+        return config.addManifests(hls).addManifests(dash).build();
+    }
+
+    /**
+     * One progressive MP4 per rendition, each with its own H.264 stream and the shared AAC stream.
+     */
+    private JobConfig buildProgressive() {
+        JobConfig.Builder config = JobConfig.newBuilder()
+                .addElementaryStreams(ElementaryStream.newBuilder()
+                        .setKey(AUDIO_KEY)
+                        .setAudioStream(AudioStream.newBuilder().setCodec("aac").setBitrateBps(128000)));
+        for (String rendition : progressiveRenditions) {
+            VideoStream.H264CodecSettings.Builder h264 = h264Of(rendition);
+            String streamKey = "video-" + h264.getHeightPixels() + "p";
+            config.addElementaryStreams(ElementaryStream.newBuilder()
+                    .setKey(streamKey)
+                    .setVideoStream(VideoStream.newBuilder().setH264(h264)));
+            config.addMuxStreams(MuxStream.newBuilder()
+                    .setKey(h264.getHeightPixels() + "p")
+                    .setContainer("mp4")
+                    .addElementaryStreams(streamKey)
+                    .addElementaryStreams(AUDIO_KEY));
+        }
+        return config.build();
+    }
+
+    // <width>x<height>:<bitrate in bps>
+    private static VideoStream.H264CodecSettings.Builder h264Of(String rendition) {
+        String[] parts = rendition.trim().split("[x:]");
+        return VideoStream.H264CodecSettings.newBuilder()
+                .setWidthPixels(Integer.parseInt(parts[0]))
+                .setHeightPixels(Integer.parseInt(parts[1]))
+                .setBitrateBps(Integer.parseInt(parts[2]))
+                .setFrameRate(30);
+    }
+
+    /**
+     * Either a Transcoder template ID (presets) or an inline job config.
+     */
+    public record ResolvedTemplate(String templateId, JobConfig config) {
+
+        public Job.Builder applyTo(Job.Builder job) {
+            return config != null ? job.setConfig(config) : job.setTemplateId(templateId);
+        }
+    }
+
+    private record CachedTemplate(ResolvedTemplate template, long expiresAt) {
+    }
+}
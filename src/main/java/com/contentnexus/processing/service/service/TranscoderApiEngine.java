@@ -0,0 +1,74 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import com.contentnexus.processing.service.resilience.BackendGuard;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.google.cloud.video.transcoder.v1.Job;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transcodes with the Google Cloud Transcoder API. Jobs read from and write to GCS directly and
+ * are tracked by the {@link TranscoderJobPoller} until they finish.
+ */
+@Service
+public class TranscoderApiEngine implements TranscodingEngine {
+    public static final String NAME = "transcoder-api";
+    private static final Logger logger = LoggerFactory.getLogger(TranscoderApiEngine.class);
+
+    private final TranscoderServiceClient transcoderClient;
+    private final TranscoderJobPoller transcoderJobPoller;
+    private final TranscodeTemplateResolver templateResolver;
+    private final BackendGuard guard;
+
+    @Value("${google.cloud.project-id}")
+    private String projectId;
+
+    @Value("${google.cloud.transcoder.location}")
+    private String location;
+
+    public TranscoderApiEngine(TranscoderServiceClient transcoderClient, TranscoderJobPoller transcoderJobPoller,
+                               TranscodeTemplateResolver templateResolver, BackendGuards backendGuards) {
+        this.transcoderClient = transcoderClient;
+        this.transcoderJobPoller = transcoderJobPoller;
+        this.templateResolver = templateResolver;
+        this.guard = backendGuards.transcoder();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(TranscodeTemplateResolver.ResolvedTemplate template) {
+        return true;
+    }
+
+    @Override
+    public String submit(VideoContext context) {
+        String parent = String.format("projects/%s/locations/%s", projectId, location);
+
+        TranscodeTemplateResolver.ResolvedTemplate template = templateResolver.resolve(context.getContent().getTemplateId());
+        Job job = template.applyTo(Job.newBuilder()
+                        .setInputUri(context.getGcsInputUri())
+                        .setOutputUri(context.getGcsOutputUri()))
+                .build();
+
+        Job createdJob = guard.call("createJob", () -> transcoderClient.createJob(parent, job));
+        logger.info("Video transcoding started for video ID: {}", context.getVideoId());
+        return createdJob.getName();
+    }
+
+    @Override
+    public CompletableFuture<Output> await(VideoContext context, String jobName) {
+        // The poller tracks the job; no thread is held while it runs
+        return transcoderJobPoller.track(jobName)
+                .thenApply(job -> new Output(templateResolver.renditionsOf(job), templateResolver.manifestUrisOf(job)));
+    }
+}
@@ -0,0 +1,216 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.resilience.BackendGuard;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.google.cloud.video.transcoder.v1.GetJobRequest;
+import com.google.cloud.video.transcoder.v1.Job;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks every in-flight Transcoder job from a single scheduler thread. Each tick issues
+ * asynchronous getJob calls for the jobs whose next poll is due and completes the job's
+ * future once it reaches a terminal state, so no caller blocks while a transcode runs.
+ */
+@Service
+public class TranscoderJobPoller {
+    private static final Logger logger = LoggerFactory.getLogger(TranscoderJobPoller.class);
+
+    @Value("${google.cloud.transcoder.poll.tick-millis:1000}")
+    private long tickMillis;
+
+    @Value("${google.cloud.transcoder.poll.min-interval-millis:5000}")
+    private long minIntervalMillis;
+
+    @Value("${google.cloud.transcoder.poll.max-interval-millis:60000}")
+    private long maxIntervalMillis;
+
+    @Value("${google.cloud.transcoder.poll.expected-duration-millis:300000}")
+    private long defaultExpectedDurationMillis;
+
+    @Value("${google.cloud.transcoder.poll.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${google.cloud.transcoder.poll.max-consecutive-errors:10}")
+    private int maxConsecutiveErrors;
+
+    private final Map<String, TrackedJob> trackedJobs = new ConcurrentHashMap<>();
+    private final TranscoderServiceClient transcoderClient;
+    private final MeterRegistry meterRegistry;
+    private final BackendGuard guard;
+    private ScheduledExecutorService scheduler;
+
+    public TranscoderJobPoller(TranscoderServiceClient transcoderClient, MeterRegistry meterRegistry,
+                               BackendGuards backendGuards) {
+        this.transcoderClient = transcoderClient;
+        this.meterRegistry = meterRegistry;
+        this.guard = backendGuards.transcoder();
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transcoder-job-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::pollDueJobs, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        trackedJobs.values().forEach(job -> job.future.completeExceptionally(
+                new IllegalStateException("Transcoder job poller shut down before job " + job.jobName + " finished")));
+        trackedJobs.clear();
+    }
+
+    public CompletableFuture<Job> track(String jobName) {
+        return track(jobName, Duration.ofMillis(defaultExpectedDurationMillis));
+    }
+
+    /**
+     * Starts tracking a created job. The returned future completes with the final job once it
+     * succeeds, or exceptionally with a {@link TranscodingFailedException} if it fails.
+     */
+    public CompletableFuture<Job> track(String jobName, Duration expectedDuration) {
+        TrackedJob job = trackedJobs.computeIfAbsent(jobName, name -> new TrackedJob(name, expectedDuration.toMillis()));
+        return job.future;
+    }
+
+    /**
+     * Stops tracking a job that is no longer wanted, e.g. because it is being deleted. Its future
+     * completes with a {@link java.util.concurrent.CancellationException}.
+     */
+    public void untrack(String jobName) {
+        TrackedJob job = trackedJobs.remove(jobName);
+        if (job != null) {
+            job.future.cancel(false);
+        }
+    }
+
+    public int getInFlightCount() {
+        return trackedJobs.size();
+    }
+
+    private void pollDueJobs() {
+        try {
+            long now = System.currentTimeMillis();
+            List<TrackedJob> dueJobs = trackedJobs.values().stream()
+                    .filter(job -> !job.polling && job.nextPollAt <= now)
+                    .limit(maxBatchSize)
+                    .toList();
+
+            for (TrackedJob job : dueJobs) {
+                job.polling = true;
+                guard.callAsync("getJob", () -> BackendGuards.toCompletableFuture(transcoderClient.getJobCallable()
+                                .futureCall(GetJobRequest.newBuilder().setName(job.jobName).build())))
+                        .whenComplete((status, e) -> {
+                            if (e == null) {
+                                handleStatus(job, status);
+                            } else {
+                                handleError(job, e);
+                            }
+                        });
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task
+            logger.error("Transcoder poll cycle failed", e);
+        }
+    }
+
+    private void handleStatus(TrackedJob job, Job status) {
+        job.consecutiveErrors = 0;
+        Job.ProcessingState state = status.getState();
+        meterRegistry.counter("transcoder.poll.requests", "result", state.name()).increment();
+        if (state != job.lastState) {
+            logger.info("Transcoder job {} is now {}", job.jobName, state);
+            job.lastState = state;
+        }
+
+        switch (state) {
+            case SUCCEEDED -> complete(job, status, null);
+            case FAILED -> {
+                logger.error("Transcoder job {} failed. Error details: {}", job.jobName, status.getError().getMessage());
+                complete(job, null, new TranscodingFailedException("Transcoding failed. Job state: " + state));
+            }
+            default -> {
+                long now = System.currentTimeMillis();
+                job.nextPollAt = now + nextPollInterval(job, now);
+                job.polling = false;
+            }
+        }
+    }
+
+    /**
+     * A transient error says nothing about the job itself, which keeps running, so it is only
+     * failed once the backend has been unreachable for several polls in a row.
+     */
+    private void handleError(TrackedJob job, Throwable failure) {
+        meterRegistry.counter("transcoder.poll.requests", "result", "error").increment();
+        boolean retryable = guard.classify("getJob", failure) != BackendGuard.Outcome.FAILED;
+        if (retryable && ++job.consecutiveErrors < maxConsecutiveErrors) {
+            logger.warn("Could not check status of transcoder job {} ({} in a row), trying again later",
+                    job.jobName, job.consecutiveErrors, failure);
+            job.nextPollAt = System.currentTimeMillis() + maxIntervalMillis;
+            job.polling = false;
+            return;
+        }
+        logger.error("Error while checking status of transcoder job {}", job.jobName, failure);
+        complete(job, null, new TranscodingFailedException("Error checking job status", failure));
+    }
+
+    private void complete(TrackedJob job, Job status, Throwable failure) {
+        trackedJobs.remove(job.jobName);
+        // Measured from when tracking started, which is within one submit of job creation
+        meterRegistry.timer("transcoder.job.duration", "outcome", failure != null ? "failure" : "success")
+                .record(System.currentTimeMillis() - job.startedAt, TimeUnit.MILLISECONDS);
+        if (failure != null) {
+            job.future.completeExceptionally(failure);
+        } else {
+            job.future.complete(status);
+        }
+    }
+
+    /**
+     * Polls sparsely while the job is well within its expected duration, tightens to the minimum
+     * interval around the expected finish, then backs off again the longer the job overruns.
+     */
+    private long nextPollInterval(TrackedJob job, long now) {
+        long remaining = job.startedAt + job.expectedDurationMillis - now;
+        long interval = remaining > 0 ? remaining / 2 : minIntervalMillis + (-remaining) / 4;
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    private class TrackedJob {
+        private final String jobName;
+        private final long expectedDurationMillis;
+        private final long startedAt = System.currentTimeMillis();
+        private final CompletableFuture<Job> future = new CompletableFuture<>();
+        private volatile long nextPollAt;
+        private volatile boolean polling;
+        private volatile Job.ProcessingState lastState;
+        private volatile int consecutiveErrors;
+
+        private TrackedJob(String jobName, long expectedDurationMillis) {
+            this.jobName = jobName;
+            this.expectedDurationMillis = expectedDurationMillis;
+            this.nextPollAt = startedAt + Math.min(minIntervalMillis, expectedDurationMillis);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.Rendition;
+import com.contentnexus.processing.service.pipeline.VideoContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Something that can transcode a video into the outputs of its template. A job is started with
+ * {@link #submit}, whose job name is persisted with the video, and awaited with {@link #await},
+ * possibly by another pod after a restart.
+ */
+public interface TranscodingEngine {
+
+    /**
+     * Stored as {@code ProcessedContent.transcodingEngine}, so a resumed video is awaited on the
+     * engine that started it.
+     */
+    String name();
+
+    boolean supports(TranscodeTemplateResolver.ResolvedTemplate template);
+
+    /**
+     * Starts transcoding {@code context.getGcsInputUri()} into {@code context.getGcsOutputUri()}
+     * and returns the job name.
+     */
+    String submit(VideoContext context) throws Exception;
+
+    /**
+     * Completes with the job's outputs once it succeeds, or exceptionally with a
+     * {@link TranscodingFailedException} if it fails.
+     */
+    CompletableFuture<Output> await(VideoContext context, String jobName);
+
+    record Output(List<Rendition> renditions, List<String> manifestUris) {
+    }
+}
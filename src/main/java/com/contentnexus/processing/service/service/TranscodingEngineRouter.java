@@ -0,0 +1,135 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the engine for a video. Short clips go to the local FFmpeg engine, when it is enabled,
+ * supports the template and has a free process soon: the raw video must be at most
+ * {@code processing.transcoding.local.max-bytes} and at most
+ * {@code processing.transcoding.local.max-duration-seconds} long. Videos of at least
+ * {@code processing.transcoding.segmented.min-duration-seconds} are split into parallel Transcoder
+ * jobs when segmented transcoding is enabled. Everything else goes to the Transcoder API as one
+ * job, whose queueing and GCS round trips matter less for long videos.
+ */
+@Service
+public class TranscodingEngineRouter {
+    private static final Logger logger = LoggerFactory.getLogger(TranscodingEngineRouter.class);
+
+    private final Map<String, TranscodingEngine> enginesByName;
+    private final TranscoderApiEngine transcoderApiEngine;
+    private final FfmpegTranscodingEngine ffmpegEngine;
+    private final SegmentedTranscodingEngine segmentedEngine;
+    private final FfmpegService ffmpegService;
+    private final TranscodeTemplateResolver templateResolver;
+    private final GcsService gcsService;
+    private final ScratchSpaceManager scratchSpaceManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${processing.transcoding.local.max-bytes:268435456}")
+    private long localMaxBytes;
+
+    @Value("${processing.transcoding.local.max-duration-seconds:120}")
+    private double localMaxDurationSeconds;
+
+    @Value("${processing.transcoding.segmented.min-duration-seconds:600}")
+    private double segmentedMinDurationSeconds;
+
+    public TranscodingEngineRouter(List<TranscodingEngine> engines, TranscoderApiEngine transcoderApiEngine,
+                                   ObjectProvider<FfmpegTranscodingEngine> ffmpegEngine,
+                                   ObjectProvider<SegmentedTranscodingEngine> segmentedEngine,
+                                   TranscodeTemplateResolver templateResolver, FfmpegService ffmpegService,
+                                   GcsService gcsService, ScratchSpaceManager scratchSpaceManager,
+                                   MeterRegistry meterRegistry) {
+        this.enginesByName = engines.stream().collect(Collectors.toMap(TranscodingEngine::name, Function.identity()));
+        this.transcoderApiEngine = transcoderApiEngine;
+        this.ffmpegEngine = ffmpegEngine.getIfAvailable();
+        this.segmentedEngine = segmentedEngine.getIfAvailable();
+        this.templateResolver = templateResolver;
+        this.ffmpegService = ffmpegService;
+        this.gcsService = gcsService;
+        this.scratchSpaceManager = scratchSpaceManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public TranscodingEngine route(VideoContext context) throws Exception {
+        TranscodingEngine engine;
+        if (isLocalCandidate(context)) {
+            engine = ffmpegEngine;
+        } else if (isSegmentedCandidate(context)) {
+            engine = segmentedEngine;
+        } else {
+            engine = transcoderApiEngine;
+        }
+        meterRegistry.counter("transcoding.routed", "engine", engine.name()).increment();
+        return engine;
+    }
+
+    /**
+     * The engine that started a job. Records from before engines were recorded used the
+     * Transcoder API.
+     */
+    public TranscodingEngine engine(String name) {
+        if (name == null) {
+            return transcoderApiEngine;
+        }
+        TranscodingEngine engine = enginesByName.get(name);
+        if (engine == null) {
+            throw new IllegalStateException("Transcoding engine " + name + " is not enabled on this pod");
+        }
+        return engine;
+    }
+
+    private boolean isLocalCandidate(VideoContext context) throws Exception {
+        if (ffmpegEngine == null || !ffmpegEngine.hasCapacity()
+                || !ffmpegEngine.supports(templateResolver.resolve(context.getContent().getTemplateId()))) {
+            return false;
+        }
+
+        // Size first, from object metadata, so large videos are never downloaded just to be probed
+        long size = gcsService.getObjectInfo(context.getGcsInputUri()).getSize();
+        if (size > localMaxBytes) {
+            return false;
+        }
+
+        // The local engine transcodes from this scratch copy, so probing it costs no extra download
+        Path rawFile = scratchSpaceManager.workspaceFor(context).fetch(context.getGcsInputUri());
+        double durationSeconds;
+        try {
+            durationSeconds = ffmpegService.probeDurationSeconds(rawFile);
+        } catch (IOException e) {
+            logger.warn("Could not probe video ID {}, transcoding with the Transcoder API", context.getVideoId(), e);
+            return false;
+        }
+        context.setDurationSeconds(durationSeconds);
+        boolean local = durationSeconds >= 0 && durationSeconds <= localMaxDurationSeconds;
+        logger.info("Video ID {} is {} bytes and {} seconds long, transcoding {}", context.getVideoId(), size,
+                durationSeconds, local ? "locally" : "with the Transcoder API");
+        return local;
+    }
+
+    private boolean isSegmentedCandidate(VideoContext context) throws InterruptedException {
+        if (segmentedEngine == null || !segmentedEngine.supports(templateResolver.resolve(context.getContent().getTemplateId()))) {
+            return false;
+        }
+        // Probed from the object's headers, so even very long videos are not downloaded here
+        double durationSeconds = segmentedEngine.durationOf(context);
+        boolean segmented = durationSeconds >= segmentedMinDurationSeconds;
+        if (segmented) {
+            logger.info("Video ID {} is {} seconds long, transcoding it in segments", context.getVideoId(), durationSeconds);
+        }
+        return segmented;
+    }
+}
@@ -0,0 +1,12 @@
+package com.contentnexus.processing.service.service;
+
+public class TranscodingFailedException extends RuntimeException {
+
+    public TranscodingFailedException(String message) {
+        super(message);
+    }
+
+    public TranscodingFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
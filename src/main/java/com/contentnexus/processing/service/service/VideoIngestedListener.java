@@ -1,31 +1,45 @@
 package com.contentnexus.processing.service.service;
 import com.contentnexus.processing.service.entity.ProcessedContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 
 @Service
 public class VideoIngestedListener {
     private static final Logger logger = LoggerFactory.getLogger(VideoIngestedListener.class);
 
-    private final VideoProcessingService videoProcessingService;
+    private final IngestDispatcher ingestDispatcher;
+    // JVM uptime when the first record arrived, i.e. how long a new pod took to start taking work
+    private final AtomicLong firstRecordUptimeMillis = new AtomicLong();
 
-    public VideoIngestedListener(VideoProcessingService videoProcessingService) {
-        this.videoProcessingService = videoProcessingService;
+    public VideoIngestedListener(IngestDispatcher ingestDispatcher, MeterRegistry meterRegistry) {
+        this.ingestDispatcher = ingestDispatcher;
+        TimeGauge.builder("processing.startup.first-record", firstRecordUptimeMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time from JVM start to the first consumed video_ingested record")
+                .register(meterRegistry);
     }
 
-    @KafkaListener(topics = "video_ingested", groupId = "content-processing-group")
-    public void listen(ProcessedContent content) {
-        logger.info("Received content for processing: {}", content);
-
-        try {
-            // Process the content
-            videoProcessingService.processVideo(content);
-        } catch (Exception e) {
-            logger.error("Error processing content for video ID: {}", content.getVideoId(), e);
+    @KafkaListener(id = IngestDispatcher.LISTENER_ID, topics = "#{'${processing.ingest.topics:video_ingested}'.split(',')}",
+            groupId = "content-processing-group")
+    public void listen(ConsumerRecord<String, ProcessedContent> record, Acknowledgment acknowledgment) {
+        if (firstRecordUptimeMillis.get() == 0
+                && firstRecordUptimeMillis.compareAndSet(0, ManagementFactory.getRuntimeMXBean().getUptime())) {
+            logger.info("First record consumed {} ms after JVM start", firstRecordUptimeMillis.get());
         }
+        logger.info("Received content for processing: {}", record.value());
+
+        // Queue the content in its priority lane; the offset is committed once processing finishes
+        ingestDispatcher.dispatch(record, acknowledgment);
     }
 
 
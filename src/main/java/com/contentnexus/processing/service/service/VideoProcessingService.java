@@ -1,40 +1,47 @@
 package com.contentnexus.processing.service.service;
 
 import com.contentnexus.processing.service.entity.ProcessedContent;
-import com.contentnexus.processing.service.repository.ProcessedContentRepository;
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.cloud.storage.Storage;
-import com.google.cloud.storage.StorageOptions;
-import com.google.cloud.video.transcoder.v1.Job;
-import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
-import com.google.cloud.video.transcoder.v1.TranscoderServiceSettings;
+import com.contentnexus.processing.service.entity.ProcessingStage;
+import com.contentnexus.processing.service.entity.Rendition;
+import com.contentnexus.processing.service.pipeline.AsyncStageHandler;
+import com.contentnexus.processing.service.pipeline.PipelineStage;
+import com.contentnexus.processing.service.pipeline.StageFailureException;
+import com.contentnexus.processing.service.pipeline.StageHandler;
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import com.contentnexus.processing.service.pipeline.VideoPipeline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Service
 public class VideoProcessingService {
     private static final Logger logger = LoggerFactory.getLogger(VideoProcessingService.class);
-    private static final String tempDir = System.getProperty("java.io.tmpdir");
 
     private final GcsService gcsService;
-    private final ProcessedContentRepository processedContentRepository;
-    private Storage storage;
-
-    @Value("${google.cloud.project-id}")
-    private String projectId;
-
-    @Value("${google.cloud.transcoder.location}")
-    private String location;
-
-    @Value("${google.cloud.credentials.file}")
-    private String credentialsPath;
+    private final MetadataUpdateService metadataUpdateService;
+    private final TranscodingEngineRouter engineRouter;
+    private final ContentDeduplicationService contentDeduplicationService;
+    private final ScratchSpaceManager scratchSpaceManager;
+    private final ProcessingLeaseService leaseService;
+    private final BlobStores blobStores;
+    private final ProcessingRetryService retryService;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
 
     @Value("${google.gcs.input-bucket}")
     private String inputBucket;
@@ -42,172 +49,430 @@ public class VideoProcessingService {
     @Value("${google.gcs.output-bucket}")
     private String outputBucket;
 
-    @Value("${google.gcs.archive-bucket}")
+    // A bucket in the store chosen by processing.archive.store
+    @Value("${processing.archive.bucket:${google.gcs.archive-bucket}}")
     private String archiveBucket;
 
-    public VideoProcessingService(GcsService gcsService, ProcessedContentRepository processedContentRepository) {
+    private VideoPipeline pipeline;
+
+    public VideoProcessingService(GcsService gcsService, MetadataUpdateService metadataUpdateService,
+                                  TranscodingEngineRouter engineRouter, ContentDeduplicationService contentDeduplicationService,
+                                  ScratchSpaceManager scratchSpaceManager, ProcessingLeaseService leaseService,
+                                  BlobStores blobStores, ProcessingRetryService retryService,
+                                  MeterRegistry meterRegistry, Environment environment) {
         this.gcsService = gcsService;
-        this.processedContentRepository = processedContentRepository;
+        this.metadataUpdateService = metadataUpdateService;
+        this.engineRouter = engineRouter;
+        this.contentDeduplicationService = contentDeduplicationService;
+        this.scratchSpaceManager = scratchSpaceManager;
+        this.leaseService = leaseService;
+        this.blobStores = blobStores;
+        this.retryService = retryService;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
     }
 
+    /**
+     * Splits the processing flow into stages, each with its own executor and bounded queue.
+     * Concurrency and queue size per stage come from {@code processing.pipeline.<stage>.concurrency}
+     * and {@code processing.pipeline.<stage>.queue-capacity}. Each stage records its
+     * {@link ProcessingStage} when done and is skipped for a video that already reached it.
+     */
     @PostConstruct
-    public void init() throws IOException {
-        if (credentialsPath == null || credentialsPath.isEmpty()) {
-            throw new IllegalArgumentException("Credentials path is not configured properly.");
-        }
+    public void init() {
+        pipeline = VideoPipeline.builder()
+                .stage(blockingStage("fingerprint", 16, checkpointed(ProcessingStage.FINGERPRINTED, false, this::fingerprintRawVideo)))
+                .stage(blockingStage("archive-raw", 16, checkpointed(ProcessingStage.RAW_ARCHIVED, false, this::archiveRawVideo)))
+                .stage(blockingStage("transcode-submit", 8, checkpointed(ProcessingStage.TRANSCODE_SUBMITTED, true, this::submitTranscode)))
+                .stage(asyncStage("transcode-wait", checkpointed(ProcessingStage.TRANSCODED, this::awaitTranscode)))
+                .stage(blockingStage("archive-output", 16, checkpointed(ProcessingStage.OUTPUT_ARCHIVED, false, this::archiveProcessedVideo)))
+                .stage(blockingStage("save", 4, this::saveProcessedContent))
+                .onFailure(this::handleStageFailure, stageSetting("failure", "concurrency", 2), stageSetting("failure", "queue-capacity", 256))
+                .build();
+    }
 
-        File credentialsFile = new File(credentialsPath.replace("\\", "/"));
-        if (!credentialsFile.exists()) {
-            throw new IllegalArgumentException("Credentials file not found at: " + credentialsPath);
-        }
+    @PreDestroy
+    public void shutdown() {
+        pipeline.close();
+    }
 
-        try (FileInputStream credentialsStream = new FileInputStream(credentialsFile)) {
-            GoogleCredentials credentials = GoogleCredentials.fromStream(credentialsStream);
-            this.storage = StorageOptions.newBuilder().setCredentials(credentials).build().getService();
-        }
+    public CompletableFuture<Void> processVideo(ProcessedContent content) {
+        return processVideo(content, null);
     }
 
-    public void processVideo(ProcessedContent content) {
+    /**
+     * Starts the video on the pipeline and returns immediately. The returned future completes once
+     * the content has been saved as processed, marked as failed or scheduled for a retry, or right
+     * away if another pod holds the video's lease or it has already been processed. It completes
+     * exceptionally if a failure could be neither retried nor dead-lettered, so the ingest record
+     * is not acknowledged.
+     */
+    public CompletableFuture<Void> processVideo(ProcessedContent content, String sourceTopic) {
+        if (content.getVideoId() == null) {
+            // Leases, output paths and metadata updates are all keyed by video ID
+            logger.error("Ignoring ingested content without a video ID: {}", content.getRawVideoPath());
+            return CompletableFuture.completedFuture(null);
+        }
+        Optional<ProcessedContent> claimed;
+        try {
+            claimed = leaseService.tryAcquire(content.getVideoId());
+        } catch (RuntimeException e) {
+            logger.error("Failed to claim video ID: {}", content.getVideoId(), e);
+            VideoContext context = new VideoContext(content);
+            context.setSourceTopic(sourceTopic);
+            try {
+                handleFailure(context, "claim", "Error in claim stage", e);
+            } catch (RuntimeException unrecorded) {
+                return CompletableFuture.failedFuture(unrecorded);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        if (claimed.isEmpty()) {
+            logger.info("Video ID {} is already claimed or processed, skipping", content.getVideoId());
+            return CompletableFuture.completedFuture(null);
+        }
+        VideoContext videoContext;
         try {
-            logger.info("Starting video processing for video ID: {}", content.getVideoId());
+            resumeFrom(content, claimed.get());
+            videoContext = contextFor(content);
+        } catch (RuntimeException e) {
+            // Otherwise the lease would be renewed, and redeliveries refused, for as long as the pod runs
+            leaseService.release(content.getVideoId());
+            throw e;
+        }
+        videoContext.setSourceTopic(sourceTopic);
+
+        logger.info("Starting video processing for video ID: {}", content.getVideoId());
+        Timer.Sample processing = Timer.start(meterRegistry);
+        return pipeline.submit(videoContext).whenComplete((context, unrecorded) -> {
+            processing.stop(meterRegistry.timer("processing.video.duration", "status", String.valueOf(content.getStatus())));
+            if (videoContext.getWorkspace() != null) {
+                videoContext.getWorkspace().close();
+            }
+            leaseService.release(videoContext.getVideoId());
+        }).thenAccept(context -> logger.info("Processing finished for video ID: {}", context.getVideoId()));
+    }
+
+    /**
+     * Carries over the progress of an earlier attempt that stopped mid-way, e.g. because its pod
+     * restarted or it is being retried. Failed attempts are not resumed; they start over.
+     */
+    private void resumeFrom(ProcessedContent content, ProcessedContent persisted) {
+        if (!("Processing".equals(persisted.getStatus()) || "Retrying".equals(persisted.getStatus()))
+                || persisted.getProcessingStage() == null) {
+            startOver(content);
+            return;
+        }
+
+        logger.info("Resuming video ID {} after stage {}", content.getVideoId(), persisted.getProcessingStage());
+        content.setStatus("Processing");
+        content.setProcessingStage(persisted.getProcessingStage());
+        content.setContentFingerprint(persisted.getContentFingerprint());
+        content.setTranscodingEngine(persisted.getTranscodingEngine());
+        content.setTranscoderJobName(persisted.getTranscoderJobName());
+        content.setTranscodeSegments(persisted.getTranscodeSegments());
+        content.setRenditions(persisted.getRenditions());
+        content.setManifestUris(persisted.getManifestUris());
+        content.setProcessedVideoPath(persisted.getProcessedVideoPath());
+    }
 
-            // Download the raw video file from GCS
-            String gcsInputUri = content.getRawVideoPath();
-            File rawFile = new File(tempDir, new File(gcsInputUri).getName());
-            logger.info("Downloading raw video from GCS: {}", gcsInputUri);
-            gcsService.downloadFromGcs(gcsInputUri, rawFile);
+    /**
+     * Drops progress the incoming record may still carry, such as a dead-lettered video's stage
+     * and failed transcode job, so every stage runs again.
+     */
+    private static void startOver(ProcessedContent content) {
+        content.setProcessingStage(null);
+        content.setTranscodingEngine(null);
+        content.setTranscoderJobName(null);
+        content.setTranscodeSegments(null);
+        content.setRenditions(null);
+        content.setManifestUris(null);
+        content.setProcessedVideoPath(null);
+    }
 
+    private VideoContext contextFor(ProcessedContent content) {
+        VideoContext context = new VideoContext(content);
+        context.setGcsInputUri(content.getRawVideoPath());
+        context.setRawFileName(new File(content.getRawVideoPath()).getName());
 
-            // Archive the raw video to the archive bucket
-            String gcsArchiveUri = gcsService.generateGcsUri(archiveBucket, rawFile.getName());
-            logger.info("Archiving raw video to GCS: {}", gcsArchiveUri);
-            gcsService.uploadToGcs(rawFile, gcsArchiveUri);
-            logger.info("Raw video archived successfully.");
+        // One directory per video, since a ladder writes several files and manifests per job
+        String outputDirectory = "processed_videos/" + content.getVideoId().replaceAll("[^A-Za-z0-9._-]", "_") + "/";
+        String gcsOutputUri = gcsService.generateGcsUri(outputBucket, outputDirectory);
+        context.setGcsOutputUri(gcsOutputUri.endsWith("/") ? gcsOutputUri : gcsOutputUri + "/");
+        return context;
+    }
 
-            // Ensure the output URI ends with a slash to indicate a directory
-            String gcsOutputUri = gcsService.generateGcsUri(outputBucket, "processed_videos/");
-            if (!gcsOutputUri.endsWith("/")) {
-                gcsOutputUri += "/";
+    private StageHandler checkpointed(ProcessingStage stage, boolean durable, StageHandler handler) {
+        return context -> {
+            if (stage.isReachedBy(context.getContent().getProcessingStage())) {
+                return;
             }
+            handler.handle(context);
+            checkpoint(context, stage, durable);
+        };
+    }
+
+    private AsyncStageHandler checkpointed(ProcessingStage stage, AsyncStageHandler handler) {
+        return context -> stage.isReachedBy(context.getContent().getProcessingStage())
+                ? CompletableFuture.completedFuture(null)
+                : handler.handle(context).thenRun(() -> checkpoint(context, stage, false));
+    }
+
+    private void checkpoint(VideoContext context, ProcessingStage stage, boolean durable) {
+        if (context.isCompleted()) {
+            return;
+        }
+        ProcessedContent content = context.getContent();
+        content.setProcessingStage(stage);
+        if (durable) {
+            metadataUpdateService.updateCheckpoint(content);
+        } else {
+            metadataUpdateService.updateMetadata(content);
+        }
+    }
+
+    private void fingerprintRawVideo(VideoContext context) throws IOException {
+        ProcessedContent content = context.getContent();
+        content.setStatus("Processing");
+
+        String contentFingerprint = gcsService.storedFingerprint(content.getRawVideoPath());
+        if (contentFingerprint == null) {
+            // No checksum in GCS; hash a scratch copy, which later stages and retries can reuse
+            Path rawFile = scratchSpaceManager.workspaceFor(context).fetch(content.getRawVideoPath());
+            contentFingerprint = contentDeduplicationService.fingerprintOf(rawFile);
+        }
+        content.setContentFingerprint(contentFingerprint);
 
-            // Transcoder API will place the output in the specified directory
-            logger.info("Transcoding output will be placed in: {}", gcsOutputUri);
+        Optional<ProcessedContent> existing = contentDeduplicationService.findReusableOutput(contentFingerprint, content.getTemplateId());
+        if (existing.isEmpty()) {
+            return;
+        }
 
-            // Process video using Transcoder
-            processVideoWithTranscoder(content, gcsInputUri, gcsOutputUri);
+        // Same content and template were already transcoded; reuse that output and skip the remaining stages
+        content.setProcessedVideoPath(existing.get().getProcessedVideoPath());
+        content.setEncodingDetails(existing.get().getEncodingDetails());
+        content.setRenditions(existing.get().getRenditions());
+        content.setManifestUris(existing.get().getManifestUris());
+        content.setStatus("Processed");
+        clearFailure(content);
+        metadataUpdateService.updateTerminalStatus(content);
+        context.setCompleted(true);
+        logger.info("Reused processed output of video ID {} for video ID: {}", existing.get().getVideoId(), content.getVideoId());
+    }
 
-            // Assuming the output file will be named based on the original input
-            String finalGcsOutputUri = gcsOutputUri + "hd.mp4";
-            logger.info("Final GCS URI for the processed video: {}", finalGcsOutputUri);
+    private void archiveRawVideo(VideoContext context) throws IOException {
+        archive(context, context.getGcsInputUri(), context.getRawFileName());
+        logger.info("Raw video archived successfully.");
+    }
 
-            // Download the processed video back from GCS to local temp directory
-            File outputFile = new File(tempDir, "processed_" + rawFile.getName());
-            logger.info("Downloading processed video from GCS: {}", finalGcsOutputUri);
-            gcsService.downloadFromGcs(finalGcsOutputUri, outputFile);
+    /**
+     * Copies an object into the archive bucket and returns its archive URI. Within one store the
+     * copy is server-side; into another store the object goes through the video's scratch
+     * workspace, where an earlier stage may already have fetched it.
+     */
+    private String archive(VideoContext context, String sourceUri, String archiveFileName) throws IOException {
+        BlobStore archiveStore = blobStores.archiveStore();
+        String archiveUri = archiveStore.generateUri(archiveBucket, archiveFileName);
+        logger.info("Archiving {} to {}", sourceUri, archiveUri);
+
+        if (blobStores.forUri(sourceUri) == archiveStore) {
+            archiveStore.copy(sourceUri, archiveUri);
+        } else {
+            Path localCopy = scratchSpaceManager.workspaceFor(context).fetch(sourceUri);
+            archiveStore.upload(localCopy.toFile(), archiveUri);
+        }
+        return archiveUri;
+    }
 
-            // Upload the processed video to the final GCS bucket
-            //String reuploadedGcsUri = gcsService.generateGcsUri(outputBucket, "processed_" + outputFile.getName());
-            //logger.info("Re-uploading processed video to GCS: {}", reuploadedGcsUri);
-            //gcsService.uploadToGcs(outputFile, reuploadedGcsUri);
+    private void submitTranscode(VideoContext context) throws Exception {
+        if (!leaseService.isHeld(context.getVideoId())) {
+            // Another pod took the video over; do not pay for a second transcode
+            logger.warn("Lost lease for video ID {} before transcoding, stopping", context.getVideoId());
+            context.setCompleted(true);
+            return;
+        }
 
-            // Archive the processed video to the archive bucket
-            String processedArchiveUri = gcsService.generateGcsUri(archiveBucket, "Archive_" + outputFile.getName());
-            logger.info("Archiving processed video to GCS: {}", processedArchiveUri);
-            gcsService.uploadToGcs(outputFile, processedArchiveUri);
-            logger.info("Processed video archived successfully.");
+        // The engine places its outputs in this directory
+        logger.info("Transcoding output will be placed in: {}", context.getGcsOutputUri());
 
-            // Update and save processed content
-            content.setProcessedVideoPath(processedArchiveUri);
-            content.setStatus("Processed");
-            content.setEncodingDetails("720p, H.264");
-            processedContentRepository.save(content);
-            logger.info("Processed content saved to database for video ID: {}", content.getVideoId());
+        TranscodingEngine engine = engineRouter.route(context);
+        String jobName = engine.submit(context);
+        context.getContent().setTranscodingEngine(engine.name());
+        context.getContent().setTranscoderJobName(jobName);
+    }
 
-        } catch (IOException e) {
-            logger.error("I/O Error processing video ID: {}", content.getVideoId(), e);
-            handleProcessingFailure(content, "I/O Error", e);
-        } catch (Exception e) {
-            logger.error("Unexpected error processing video ID: {}", content.getVideoId(), e);
-            handleProcessingFailure(content, "Unexpected Error", e);
+    private CompletableFuture<?> awaitTranscode(VideoContext context) {
+        ProcessedContent content = context.getContent();
+        // Engines complete the future from their own threads; no pipeline thread is held while a job runs
+        TranscodingEngine engine = engineRouter.engine(content.getTranscodingEngine());
+        return engine.await(context, content.getTranscoderJobName()).thenAccept(output -> {
+            logger.info("Video transcoding completed successfully for video ID: {}", context.getVideoId());
+            content.setRenditions(output.renditions());
+            content.setManifestUris(output.manifestUris());
+        });
+    }
+
+    private void archiveProcessedVideo(VideoContext context) throws IOException {
+        // Archive the highest-resolution progressive rendition; segmented ones are served through manifests
+        Optional<Rendition> archivable = Optional.ofNullable(context.getContent().getRenditions()).orElse(List.of()).stream()
+                .filter(rendition -> !rendition.isSegmented())
+                .max(Comparator.comparing(rendition -> rendition.getHeightPixels() != null ? rendition.getHeightPixels() : 0));
+        if (archivable.isEmpty()) {
+            logger.info("No progressive rendition to archive for video ID: {}", context.getVideoId());
+            return;
         }
+
+        String finalGcsOutputUri = archivable.get().getUri();
+        logger.info("Final GCS URI for the processed video: {}", finalGcsOutputUri);
+
+        String processedArchiveUri = archive(context, finalGcsOutputUri, "Archive_processed_" + context.getRawFileName());
+        logger.info("Processed video archived successfully.");
+
+        context.getContent().setProcessedVideoPath(processedArchiveUri);
     }
 
-    private void processVideoWithTranscoder(ProcessedContent content, String gcsInputUri, String gcsOutputUri) throws IOException {
-        try (TranscoderServiceClient transcoderClient = createTranscoderClient()) {
-            String parent = String.format("projects/%s/locations/%s", projectId, location);
+    private void saveProcessedContent(VideoContext context) {
+        // Update and save processed content
+        ProcessedContent content = context.getContent();
+        List<String> manifestUris = Optional.ofNullable(content.getManifestUris()).orElse(List.of());
+        if (content.getProcessedVideoPath() == null && !manifestUris.isEmpty()) {
+            content.setProcessedVideoPath(manifestUris.get(0));
+        }
+        content.setStatus("Processed");
+        clearFailure(content);
+        content.setEncodingDetails(encodingDetailsOf(content.getRenditions()));
+        metadataUpdateService.updateTerminalStatus(content);
+        logger.info("Processed content saved to database for video ID: {}", content.getVideoId());
+    }
 
-            Job job = Job.newBuilder()
-                    .setInputUri(gcsInputUri)
-                    .setOutputUri(gcsOutputUri)
-                    .build();
+    // A video that succeeded on a retry or replay keeps its retry count but not the earlier failure
+    private static void clearFailure(ProcessedContent content) {
+        content.setErrorDetails(null);
+        content.setFailedStage(null);
+    }
 
-            Job createdJob = transcoderClient.createJob(parent, job);
-            logger.info("Video transcoding started for video ID: {}", content.getVideoId());
+    private String encodingDetailsOf(List<Rendition> renditions) {
+        if (renditions == null) {
+            return null;
+        }
+        // e.g. "1080p H.264 5000 kbps, 720p H.264 2800 kbps"
+        return renditions.stream()
+                .filter(rendition -> rendition.getHeightPixels() != null)
+                .map(rendition -> rendition.getHeightPixels() + "p " + rendition.getCodec()
+                        + (rendition.getBitrateBps() != null ? " " + rendition.getBitrateBps() / 1000 + " kbps" : ""))
+                .distinct()
+                .collect(Collectors.joining(", "));
+    }
 
-            boolean jobCompleted = false;
+    private void handleStageFailure(VideoContext context, StageFailureException failure) {
+        Throwable cause = failure.getCause();
+        if (isLeaseLost(cause)) {
+            // The pod that took the video over records its outcome; recording one here would race it
+            logger.warn("Stopped processing video ID {} in {} stage: lease lost", context.getVideoId(), failure.getStage());
+            return;
+        }
+        logger.error("Error in {} stage for video ID: {}", failure.getStage(), context.getVideoId(), cause);
+        String errorMessage = cause instanceof TranscodingFailedException
+                ? cause.getMessage()
+                : "Error in " + failure.getStage() + " stage";
+        handleFailure(context, failure.getStage(), errorMessage, cause);
+    }
 
-            while (!jobCompleted) {
+    /**
+     * Schedules a retry for a transient failure while the video has retries left; otherwise marks
+     * it failed and dead-letters it. Either way the Kafka record is written before this returns,
+     * so the ingest record is only acknowledged once the failure is recorded. The Kafka record is
+     * written even if the status cannot be, e.g. while MongoDB is down; if the Kafka record cannot
+     * be written either, this throws.
+     */
+    private void handleFailure(VideoContext context, String stage, String errorMessage, Throwable cause) {
+        ProcessedContent content = context.getContent();
+        int retries = content.getRetryCount() != null ? content.getRetryCount() : 0;
+        content.setFailedStage(stage);
+        if (retries < retryService.getMaxRetries() && retryService.isRetryable(cause)) {
+            content.setRetryCount(retries + 1);
+            content.setStatus("Retrying");
+            content.setErrorDetails(errorMessage);
+            boolean scheduled = false;
+            try {
+                retryService.scheduleRetry(content, context.getSourceTopic(), stage, errorMessage);
+                scheduled = true;
+            } catch (RuntimeException e) {
+                logger.error("Could not schedule a retry for video ID: {}", content.getVideoId(), e);
+                content.setRetryCount(retries);
+            }
+            if (scheduled) {
                 try {
-                    Thread.sleep(10000); // Adjust sleep time as needed
-
-                    Job jobStatus = transcoderClient.getJob(createdJob.getName());
-                    String jobState = jobStatus.getState().name(); // Use string representation of state
-
-                    logger.info("Current job state for video ID {}: {}", content.getVideoId(), jobState);
-
-                    if (jobState.equals("FAILED")) {
-                        String reason = "Transcoding failed. Job state: " + jobState;
-                        logger.error("Transcoding failed for video ID {}. Error details: {}", content.getVideoId(), jobStatus.getError().getMessage());
-                        handleProcessingFailure(content, reason, new Exception(reason));
-                        break;
-                    }
-
-                    switch (jobState) {
-                        case "SUCCEEDED":
-                            jobCompleted = true;
-                            logger.info("Video transcoding completed successfully for video ID: {}", content.getVideoId());
-                            break;
-                        case "RUNNING":
-                            // Optionally log running state or handle differently
-                            break;
-                        case "CANCELLED":
-                            jobCompleted = true;
-                            String cancelledReason = "Transcoding job was cancelled. Job state: " + jobState;
-                            handleProcessingFailure(content, cancelledReason, new Exception(cancelledReason));
-                            break;
-                        default:
-                            logger.warn("Unexpected job state for video ID {}: {}", content.getVideoId(), jobState);
-                            break;
-                    }
-                } catch (InterruptedException e) {
-                    logger.warn("Interrupted while waiting for job to complete for video ID: {}", content.getVideoId(), e);
-                    Thread.currentThread().interrupt(); // Restore interrupt status
-                    break;
-                } catch (Exception e) {
-                    logger.error("Error while checking job status for video ID: {}", content.getVideoId(), e);
-                    handleProcessingFailure(content, "Error checking job status", e);
-                    break;
+                    metadataUpdateService.updateMetadata(content);
+                } catch (RuntimeException e) {
+                    logger.error("Scheduled a retry for video ID {} but could not record it", content.getVideoId(), e);
                 }
+                return;
+            }
+        }
+        try {
+            handleProcessingFailure(content, errorMessage, cause);
+        } catch (LeaseLostException e) {
+            logger.warn("Not recording failure of video ID {}: lease lost", content.getVideoId());
+            return;
+        } catch (RuntimeException e) {
+            // The dead letter still records the failure; ProcessingResumeSweeper picks up a video left in Processing
+            logger.error("Could not mark video ID {} as failed, dead-lettering it anyway", content.getVideoId(), e);
+        }
+        retryService.deadLetter(content, context.getSourceTopic(), stage, errorMessage, cause);
+    }
+
+    private static boolean isLeaseLost(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof LeaseLostException) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Stage timers measure the handler only; time spent queued in front of a stage shows up as the
+     * gap between {@code processing.video.duration} and the sum of the stage timers.
+     */
+    private PipelineStage blockingStage(String name, int defaultConcurrency, StageHandler handler) {
+        StageHandler timed = context -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "failure";
+            try {
+                handler.handle(context);
+                outcome = "success";
+            } finally {
+                sample.stop(stageTimer(name, outcome));
+            }
+        };
+        return PipelineStage.blocking(name, stageSetting(name, "concurrency", defaultConcurrency),
+                stageSetting(name, "queue-capacity", 256), timed);
     }
 
-    private TranscoderServiceClient createTranscoderClient() throws IOException {
-        // Load credentials from the specified file
-        GoogleCredentials credentials = GoogleCredentials.fromStream(new FileInputStream(credentialsPath))
-                .createScoped("https://www.googleapis.com/auth/cloud-platform");
+    private PipelineStage asyncStage(String name, AsyncStageHandler handler) {
+        return PipelineStage.async(name, context -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return handler.handle(context)
+                    .whenComplete((ignored, e) -> sample.stop(stageTimer(name, e == null ? "success" : "failure")));
+        });
+    }
 
-        TranscoderServiceSettings settings = TranscoderServiceSettings.newBuilder()
-                .setCredentialsProvider(() -> credentials)
-                .build();
+    private Timer stageTimer(String stage, String outcome) {
+        return meterRegistry.timer("processing.stage.duration", "stage", stage, "outcome", outcome);
+    }
 
-        return TranscoderServiceClient.create(settings);
+    private int stageSetting(String stage, String setting, int defaultValue) {
+        return environment.getProperty("processing.pipeline." + stage + "." + setting, Integer.class, defaultValue);
     }
 
-    private void handleProcessingFailure(ProcessedContent content, String errorMessage, Exception e) {
+    private void handleProcessingFailure(ProcessedContent content, String errorMessage, Throwable e) {
+        // The message names the video, so it stays in the logs and errorDetails rather than a tag
+        meterRegistry.counter("processing.failures", "stage", String.valueOf(content.getFailedStage()),
+                "exception", e != null ? e.getClass().getSimpleName() : "none").increment();
         content.setStatus("Failed");
         content.setErrorDetails(errorMessage);
-        processedContentRepository.save(content);
+        metadataUpdateService.updateTerminalStatus(content);
         logger.error("Updated content status to 'Failed' for video ID: {}. Error details saved.", content.getVideoId());
     }
 
@@ -0,0 +1,93 @@
+package com.contentnexus.processing.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void refusesPermitsBeyondTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, 0);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.onIgnored();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void windowOfSuccessesUnderSteadyDemandRaisesTheLimitByAboutOne() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 0.5, 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+
+        // Every completed call is replaced at once, so the limit stays fully used
+        for (int i = 0; i < 4; i++) {
+            limiter.onSuccess();
+            assertTrue(limiter.tryAcquire());
+        }
+        assertEquals(4, limiter.getLimit());
+
+        limiter.onSuccess();
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhileTheLimitIsNotInUse() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 0.5, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onSuccess();
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void neverGrowsPastTheMaximum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, 0.5, 0);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.onSuccess();
+            limiter.onSuccess();
+        }
+
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void burstOfThrottlesCutsTheLimitOncePerCooldown() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10, 0.5, 60_000);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        for (int i = 0; i < 3; i++) {
+            limiter.onThrottled();
+        }
+
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void neverCutsBelowTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 3, 10, 0.5, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onThrottled();
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+}
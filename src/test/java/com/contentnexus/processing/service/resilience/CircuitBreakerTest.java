@@ -0,0 +1,112 @@
+package com.contentnexus.processing.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private static final long OPEN_MILLIS = 50;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS, 1000);
+    private final List<Boolean> notifications = new CopyOnWriteArrayList<>();
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        breaker.addListener(notifications::add);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.waitMillis() > 0);
+        assertEquals(List.of(true), notifications);
+    }
+
+    @Test
+    void admitsSingleProbeOnceOpenPeriodEnds() throws Exception {
+        breaker.addListener(notifications::add);
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+
+        assertEquals(0, breaker.waitMillis());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.waitMillis() > 0);
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.waitMillis());
+        assertEquals(List.of(true, false), notifications);
+    }
+
+    @Test
+    void admitsAnotherProbeWhenTheFirstNeverReportsBack() throws Exception {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertEquals(0, breaker.waitMillis());
+
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertEquals(0, breaker.waitMillis());
+    }
+
+    @Test
+    void failedProbeReopensForTwiceAsLong() throws Exception {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertEquals(0, breaker.waitMillis());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.waitMillis() > OPEN_MILLIS);
+    }
+
+    @Test
+    void deliversTransitionsInOrderWhenTheyRace() throws Exception {
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        breaker.addListener(open -> {
+            if (open) {
+                delivering.countDown();
+                await(release);
+            }
+            notifications.add(open);
+        });
+
+        Thread opener = new Thread(this::open);
+        opener.start();
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        // A call that was in flight when the breaker opened succeeds while the open is still being delivered
+        Thread closer = new Thread(breaker::onSuccess);
+        closer.start();
+        Thread.sleep(100);
+        release.countDown();
+        opener.join(5000);
+        closer.join(5000);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(List.of(true, false), notifications);
+    }
+
+    private void open() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestDispatcherTest {
+    private static final String TOPIC = "video_ingested";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private final VideoProcessingService videoProcessingService = mock(VideoProcessingService.class);
+    private final KafkaListenerEndpointRegistry listenerRegistry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    // Video IDs in the order they were given a slot
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private final Map<String, CompletableFuture<Void>> processing = new ConcurrentHashMap<>();
+    private IngestDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        when(listenerRegistry.getListenerContainer(IngestDispatcher.LISTENER_ID)).thenReturn(container);
+        when(container.getAssignedPartitions()).thenReturn(List.of(PARTITION));
+        // Videos finish when the test completes their future, so until then every admitted one keeps its slot
+        when(videoProcessingService.processVideo(any(ProcessedContent.class), anyString())).thenAnswer(invocation -> {
+            String videoId = ((ProcessedContent) invocation.getArgument(0)).getVideoId();
+            started.add(videoId);
+            return processing.computeIfAbsent(videoId, id -> new CompletableFuture<>());
+        });
+
+        dispatcher = dispatcher(1, 0, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void resumesPausedTopicWhenItsQueuedRecordsAreRevoked() {
+        // One record takes the only slot; the next four fill the topic's queue and pause it
+        for (long offset = 0; offset < 5; offset++) {
+            dispatcher.dispatch(record(offset), mock(Acknowledgment.class));
+        }
+        verify(container).pausePartition(PARTITION);
+
+        dispatcher.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(PARTITION));
+        verify(container).resumePartition(PARTITION);
+
+        // Reassigned after the rebalance: the topic is no longer paused, so neither is the partition
+        dispatcher.onPartitionsAssigned(mock(Consumer.class), List.of(PARTITION));
+        verify(container, times(1)).pausePartition(PARTITION);
+    }
+
+    @Test
+    void keepsTopicPausedWhileRecordsOfOtherPartitionsStillFillItsQueue() {
+        dispatcher.dispatch(record(0), mock(Acknowledgment.class));
+        for (long offset = 0; offset < 4; offset++) {
+            dispatcher.dispatch(new ConsumerRecord<>(TOPIC, 1, offset, "video-1-" + offset, content("video-1-" + offset)),
+                    mock(Acknowledgment.class));
+        }
+        verify(container).pausePartition(PARTITION);
+
+        dispatcher.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(PARTITION));
+        verify(container, never()).resumePartition(any());
+    }
+
+    @Test
+    void leavesRecordUnacknowledgedWhenItsOutcomeWasNotRecorded() {
+        when(videoProcessingService.processVideo(any(ProcessedContent.class), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Kafka unavailable")));
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        dispatcher.dispatch(record(0), acknowledgment);
+
+        verify(videoProcessingService, timeout(5000)).processVideo(any(ProcessedContent.class), anyString());
+        verify(acknowledgment, after(500).never()).acknowledge();
+    }
+
+    @Test
+    void sharesSlotsBetweenBackloggedLanesByWeight() {
+        dispatcher.dispatch(record(0), mock(Acknowledgment.class));
+        for (int i = 0; i < 11; i++) {
+            dispatchAtOnceFinishing("urgent-" + i, "urgent");
+            dispatchAtOnceFinishing("standard-" + i, "standard");
+        }
+
+        finish("video-0");
+
+        verify(videoProcessingService, timeout(5000).times(23)).processVideo(any(ProcessedContent.class), anyString());
+        // Weights 8 and 3: of the first 11 slots, counting video-0 in the standard lane, 8 go to urgent
+        assertEquals(8, started.subList(0, 11).stream().filter(videoId -> videoId.startsWith("urgent")).count());
+    }
+
+    @Test
+    void keepsReservedSlotsForTheFirstLane() {
+        dispatcher.shutdown();
+        dispatcher = dispatcher(2, 1, 600);
+
+        dispatcher.dispatch(record(0), mock(Acknowledgment.class));
+        dispatcher.dispatch(record(1), mock(Acknowledgment.class));
+        dispatcher.dispatch(prioritized("urgent-0", "urgent", 2), mock(Acknowledgment.class));
+
+        verify(videoProcessingService, timeout(5000).times(2)).processVideo(any(ProcessedContent.class), anyString());
+        verify(videoProcessingService, after(500).times(2)).processVideo(any(ProcessedContent.class), anyString());
+        assertEquals(List.of("video-0", "urgent-0"), started);
+    }
+
+    @Test
+    void admitsRecordPastMaximumWaitAheadOfHigherWeights() {
+        dispatcher.shutdown();
+        dispatcher = dispatcher(1, 0, 0);
+
+        dispatcher.dispatch(record(0), mock(Acknowledgment.class));
+        dispatchAtOnceFinishing("standard-0", "standard");
+        for (int i = 0; i < 3; i++) {
+            dispatchAtOnceFinishing("urgent-" + i, "urgent");
+        }
+
+        finish("video-0");
+
+        verify(videoProcessingService, timeout(5000).times(5)).processVideo(any(ProcessedContent.class), anyString());
+        // Every record is overdue at once, so they go in arrival order
+        assertEquals(List.of("video-0", "standard-0", "urgent-0", "urgent-1", "urgent-2"), started);
+    }
+
+    private IngestDispatcher dispatcher(int maxInFlight, int reservedSlots, long maxWaitSeconds) {
+        IngestDispatcher dispatcher = new IngestDispatcher(videoProcessingService, listenerRegistry, new SimpleMeterRegistry(),
+                mock(BackendGuards.class));
+        ReflectionTestUtils.setField(dispatcher, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(dispatcher, "workerThreads", 1);
+        ReflectionTestUtils.setField(dispatcher, "laneSettings", new String[]{"urgent:8", "standard:3"});
+        ReflectionTestUtils.setField(dispatcher, "defaultLaneName", "standard");
+        ReflectionTestUtils.setField(dispatcher, "laneTopicSettings", new String[0]);
+        ReflectionTestUtils.setField(dispatcher, "reservedSlots", reservedSlots);
+        ReflectionTestUtils.setField(dispatcher, "maxWaitSeconds", maxWaitSeconds);
+        ReflectionTestUtils.setField(dispatcher, "maxQueued", 4);
+        dispatcher.init();
+        return dispatcher;
+    }
+
+    // The video may not have started yet; it then finishes as soon as it does
+    private void finish(String videoId) {
+        processing.computeIfAbsent(videoId, id -> new CompletableFuture<>()).complete(null);
+    }
+
+    // Offsets only need to be distinct; these records are acknowledged as they finish
+    private void dispatchAtOnceFinishing(String videoId, String priority) {
+        processing.put(videoId, CompletableFuture.completedFuture(null));
+        dispatcher.dispatch(prioritized(videoId, priority, 100 + started.size() + processing.size()),
+                mock(Acknowledgment.class));
+    }
+
+    private static ConsumerRecord<String, ProcessedContent> prioritized(String videoId, String priority, long offset) {
+        ProcessedContent content = content(videoId);
+        content.setPriority(priority);
+        return new ConsumerRecord<>(TOPIC, 0, offset, videoId, content);
+    }
+
+    private static ConsumerRecord<String, ProcessedContent> record(long offset) {
+        String videoId = "video-" + offset;
+        return new ConsumerRecord<>(TOPIC, 0, offset, videoId, content(videoId));
+    }
+
+    private static ProcessedContent content(String videoId) {
+        ProcessedContent content = new ProcessedContent();
+        content.setVideoId(videoId);
+        content.setRawVideoPath("gs://input/" + videoId + ".mp4");
+        return content;
+    }
+}
@@ -0,0 +1,148 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProcessedContentWriteBufferTest {
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int PRIMARY_STEPPED_DOWN = 189;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    // Video IDs in the order their updates were added to the current bulk operation
+    private final List<String> batch = new ArrayList<>();
+    private final List<String> flushed = new ArrayList<>();
+    private ProcessedContentWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        // Set up as Spring Boot does, which maps java.time values as simple types
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedContent.class)).thenAnswer(invocation -> {
+            batch.clear();
+            return bulkOperations;
+        });
+        when(bulkOperations.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            batch.add(((Query) invocation.getArgument(0)).getQueryObject().getString("videoId"));
+            return bulkOperations;
+        });
+        when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            batch.add(((Query) invocation.getArgument(0)).getQueryObject().getString("videoId"));
+            return bulkOperations;
+        });
+
+        buffer = new ProcessedContentWriteBuffer(mongoTemplate);
+        ReflectionTestUtils.setField(buffer, "flushBatchSize", 100);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", 60_000L);
+        buffer.init();
+        buffer.addFlushListener(contents -> contents.forEach(content -> flushed.add(content.videoId())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        doReturn(null).when(bulkOperations).execute();
+        buffer.shutdown();
+    }
+
+    @Test
+    void dropsUpdateRejectedForGoodAndKeepsTheRestOfTheBatch() {
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            throw failure(DUPLICATE_KEY, "bad");
+        });
+        buffer.write(content("bad"));
+
+        buffer.writeNow(content("good"));
+
+        assertEquals(List.of("good"), flushed);
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void failsWriteNowWhoseOwnUpdateIsRejected() {
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            throw failure(DUPLICATE_KEY, "bad");
+        });
+
+        assertThrows(BulkOperationException.class, () -> buffer.writeNow(content("bad")));
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void requeuesUpdateThatFailedWithTransientError() {
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            throw failure(PRIMARY_STEPPED_DOWN, "retried");
+        });
+        buffer.write(content("retried"));
+
+        buffer.writeNow(content("good"));
+
+        assertEquals(List.of("good"), flushed);
+        assertEquals(1, buffer.getPendingCount());
+
+        doReturn(null).when(bulkOperations).execute();
+        buffer.flush();
+        assertEquals(List.of("good", "retried"), flushed);
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void failsFencedWriteOnceAnotherPodHoldsTheLease() {
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        ProcessedContent current = content("taken");
+        current.setLeaseOwner("other-pod");
+        when(mongoTemplate.find(any(Query.class), eq(ProcessedContent.class))).thenReturn(List.of(current));
+
+        assertThrows(LeaseLostException.class, () -> buffer.writeNow(content("taken"), "this-pod"));
+        assertEquals(List.of(), flushed);
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    private BulkOperationException failure(int code, String videoId) {
+        BulkWriteError error = new BulkWriteError(code, "rejected", new BsonDocument(), batch.indexOf(videoId));
+        return new BulkOperationException("bulk write failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(error), null, new ServerAddress(), Set.of()));
+    }
+
+    private static ProcessedContent content(String videoId) {
+        ProcessedContent content = new ProcessedContent();
+        content.setVideoId(videoId);
+        content.setStatus("Processing");
+        return content;
+    }
+}
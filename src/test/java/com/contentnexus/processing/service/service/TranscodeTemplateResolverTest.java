@@ -0,0 +1,53 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.resilience.BackendGuards;
+import com.google.cloud.video.transcoder.v1.JobConfig;
+import com.google.cloud.video.transcoder.v1.MuxStream;
+import com.google.cloud.video.transcoder.v1.TranscoderServiceClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class TranscodeTemplateResolverTest {
+
+    private final TranscodeTemplateResolver resolver = new TranscodeTemplateResolver(mock(TranscoderServiceClient.class),
+            new BackendGuards(new MockEnvironment(), new SimpleMeterRegistry()));
+    private final FfmpegTranscodingEngine ffmpegEngine = new FfmpegTranscodingEngine(mock(ScratchSpaceManager.class),
+            resolver, mock(BlobStores.class), mock(FfmpegService.class), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(resolver, "defaultTemplateId", "preset/web-hd");
+        ReflectionTestUtils.setField(resolver, "abrLadderId", "abr-ladder");
+        ReflectionTestUtils.setField(resolver, "abrLadder", new String[]{"1920x1080:5000000", "640x360:800000"});
+        ReflectionTestUtils.setField(resolver, "progressiveId", "progressive-mp4");
+        ReflectionTestUtils.setField(resolver, "progressiveRenditions", new String[]{"1280x720:2800000", "640x360:800000"});
+        ReflectionTestUtils.setField(resolver, "segmentDurationSeconds", 6L);
+        ReflectionTestUtils.setField(resolver, "cacheTtlSeconds", 600L);
+    }
+
+    @Test
+    void progressiveTemplateHasOneMp4PerRenditionAndRunsLocally() {
+        TranscodeTemplateResolver.ResolvedTemplate template = resolver.resolve("progressive-mp4");
+
+        JobConfig config = template.config();
+        assertEquals(List.of("720p", "360p"), config.getMuxStreamsList().stream().map(MuxStream::getKey).toList());
+        assertEquals(0, config.getManifestsCount());
+        assertTrue(ffmpegEngine.supports(template));
+    }
+
+    @Test
+    void defaultPresetAndAbrLadderStayOnTheTranscoderApi() {
+        assertFalse(ffmpegEngine.supports(resolver.resolve(null)));
+        assertFalse(ffmpegEngine.supports(resolver.resolve("abr-ladder")));
+    }
+}
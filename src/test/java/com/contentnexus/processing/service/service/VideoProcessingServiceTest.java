@@ -0,0 +1,141 @@
+package com.contentnexus.processing.service.service;
+
+import com.contentnexus.processing.service.entity.ProcessedContent;
+import com.contentnexus.processing.service.entity.ProcessingStage;
+import com.contentnexus.processing.service.pipeline.VideoContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VideoProcessingServiceTest {
+    private static final String VIDEO_ID = "video-1";
+
+    private final GcsService gcsService = mock(GcsService.class);
+    private final MetadataUpdateService metadataUpdateService = mock(MetadataUpdateService.class);
+    private final TranscodingEngineRouter engineRouter = mock(TranscodingEngineRouter.class);
+    private final ContentDeduplicationService contentDeduplicationService = mock(ContentDeduplicationService.class);
+    private final ProcessingLeaseService leaseService = mock(ProcessingLeaseService.class);
+    private final BlobStores blobStores = mock(BlobStores.class);
+    private final ProcessingRetryService retryService = mock(ProcessingRetryService.class);
+    private final TranscodingEngine engine = mock(TranscodingEngine.class);
+    private VideoProcessingService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BlobStore store = mock(BlobStore.class);
+        when(blobStores.archiveStore()).thenReturn(store);
+        when(blobStores.forUri(anyString())).thenReturn(store);
+        when(gcsService.storedFingerprint(anyString())).thenReturn("fingerprint");
+        when(gcsService.generateGcsUri(anyString(), anyString())).thenReturn("gs://output/processed_videos/" + VIDEO_ID + "/");
+        when(contentDeduplicationService.findReusableOutput(anyString(), any())).thenReturn(Optional.empty());
+        when(leaseService.isHeld(VIDEO_ID)).thenReturn(true);
+        when(engine.name()).thenReturn("transcoder-api");
+        when(engineRouter.route(any(VideoContext.class))).thenReturn(engine);
+        when(engineRouter.engine("transcoder-api")).thenReturn(engine);
+
+        service = new VideoProcessingService(gcsService, metadataUpdateService, engineRouter, contentDeduplicationService,
+                mock(ScratchSpaceManager.class), leaseService, blobStores, retryService,
+                new SimpleMeterRegistry(), new MockEnvironment());
+        ReflectionTestUtils.setField(service, "inputBucket", "input");
+        ReflectionTestUtils.setField(service, "outputBucket", "output");
+        ReflectionTestUtils.setField(service, "archiveBucket", "archive");
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void replayedVideoThatFailedAfterTranscodeSubmitStartsOver() throws Exception {
+        ProcessedContent persisted = content();
+        persisted.setStatus("Failed");
+        persisted.setProcessingStage(ProcessingStage.TRANSCODE_SUBMITTED);
+        when(leaseService.tryAcquire(VIDEO_ID)).thenReturn(Optional.of(persisted));
+        when(engine.submit(any(VideoContext.class))).thenReturn("new-job");
+        when(engine.await(any(VideoContext.class), eq("new-job")))
+                .thenReturn(CompletableFuture.completedFuture(new TranscodingEngine.Output(List.of(), List.of())));
+
+        // The dead-lettered record as the replay re-queues it: retries reset, progress still recorded
+        ProcessedContent replayed = content();
+        replayed.setStatus("Failed");
+        replayed.setProcessingStage(ProcessingStage.TRANSCODE_SUBMITTED);
+        replayed.setTranscodingEngine("transcoder-api");
+        replayed.setTranscoderJobName("failed-job");
+
+        service.processVideo(replayed, "video_ingested").get(10, TimeUnit.SECONDS);
+
+        verify(engine).submit(any(VideoContext.class));
+        verify(engine, never()).await(any(VideoContext.class), eq("failed-job"));
+        assertEquals("Processed", replayed.getStatus());
+        assertEquals("new-job", replayed.getTranscoderJobName());
+    }
+
+    @Test
+    void deadLettersFailedVideoEvenWhenItsStatusCannotBeWritten() throws Exception {
+        when(leaseService.tryAcquire(VIDEO_ID)).thenReturn(Optional.of(content()));
+        when(engine.submit(any(VideoContext.class))).thenThrow(new IllegalStateException("rejected"));
+        doThrow(new DataAccessResourceFailureException("down")).when(metadataUpdateService).updateTerminalStatus(any());
+
+        service.processVideo(content(), "video_ingested").get(10, TimeUnit.SECONDS);
+
+        verify(retryService).deadLetter(any(ProcessedContent.class), eq("video_ingested"), eq("transcode-submit"),
+                anyString(), any(IllegalStateException.class));
+    }
+
+    @Test
+    void failsWhenFailureCanBeNeitherRetriedNorDeadLettered() throws Exception {
+        when(leaseService.tryAcquire(VIDEO_ID)).thenReturn(Optional.of(content()));
+        when(engine.submit(any(VideoContext.class))).thenThrow(new IllegalStateException("rejected"));
+        doThrow(new IllegalStateException("Kafka unavailable")).when(retryService)
+                .deadLetter(any(), any(), any(), any(), any());
+
+        CompletableFuture<Void> processing = service.processVideo(content(), "video_ingested");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> processing.get(10, TimeUnit.SECONDS));
+        assertEquals("Kafka unavailable", failure.getCause().getMessage());
+        verify(leaseService).release(VIDEO_ID);
+    }
+
+    @Test
+    void stopsWithoutRecordingFailureOnceLeaseIsLost() throws Exception {
+        when(leaseService.tryAcquire(VIDEO_ID)).thenReturn(Optional.of(content()));
+        when(engine.submit(any(VideoContext.class))).thenThrow(new LeaseLostException(VIDEO_ID));
+
+        service.processVideo(content(), "video_ingested").get(10, TimeUnit.SECONDS);
+
+        verify(metadataUpdateService, never()).updateTerminalStatus(any());
+        verify(retryService, never()).deadLetter(any(), any(), any(), any(), any());
+        verify(retryService, never()).scheduleRetry(any(), any(), any(), any());
+        verify(leaseService).release(VIDEO_ID);
+    }
+
+    private static ProcessedContent content() {
+        ProcessedContent content = new ProcessedContent();
+        content.setVideoId(VIDEO_ID);
+        content.setRawVideoPath("gs://input/" + VIDEO_ID + ".mp4");
+        return content;
+    }
+}